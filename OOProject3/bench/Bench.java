@@ -0,0 +1,59 @@
+import java.util.Arrays;
+
+/**
+ * Minimal micro-benchmark harness for the bench/ programs: warm-up, then timed operations,
+ * reported as throughput and latency percentiles in one line per benchmark so runs before
+ * and after a change can be diffed.
+ */
+public final class Bench {
+
+    /**
+     * One benchmarked operation.
+     */
+    @FunctionalInterface
+    public interface Op {
+        void run() throws Exception;
+    }
+
+    private Bench() {
+    }
+
+    /**
+     * Runs the operation warmup times untimed, then iterations times timed, and prints the result.
+     *
+     * @param name printed in the first column, e.g. "auth.login"
+     * @param warmup untimed runs, to let the JIT and the server caches settle
+     * @param iterations timed runs
+     * @param op the operation
+     * @return the sorted latencies in nanoseconds
+     */
+    public static long[] run(String name, int warmup, int iterations, Op op) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            op.run();
+        }
+        long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            op.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        report(name, samples);
+        return samples;
+    }
+
+    /**
+     * Prints throughput and latency percentiles for a set of samples (sorted in place).
+     */
+    public static void report(String name, long[] samples) {
+        Arrays.sort(samples);
+        double totalSeconds = Arrays.stream(samples).sum() / 1e9;
+        System.out.printf("%-28s %8d ops  %12.1f ops/s  p50 %9.3f ms  p99 %9.3f ms  max %9.3f ms%n",
+                name, samples.length, samples.length / totalSeconds,
+                percentile(samples, 0.50) / 1e6, percentile(samples, 0.99) / 1e6,
+                samples[samples.length - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+}
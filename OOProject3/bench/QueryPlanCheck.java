@@ -0,0 +1,447 @@
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Guards the indexes the hot queries depend on: runs EXPLAIN on each of them and fails if a
+ * table that should be read through an index is scanned, or if the query got slower than its budget.
+ *
+ * Plans only mean something at production volume, so "seed" first fills the configured database
+ * (use a local one) with a year of past shows in throw-away halls and about two million tickets.
+ * The fixture is marked by the movie title "__plan_check__" and removed again by "drop".
+ *
+ * Usage: java QueryPlanCheck [seed|check|drop] (default check; exits with status 1 on a failure)
+ * System properties: bench.plan.halls (default 4), bench.plan.capacity (seats per hall, default 250),
+ * bench.plan.days (default 365), bench.plan.runs (timed runs per query, default 20),
+ * bench.plan.maxMs (median budget per query, default 50).
+ */
+public class QueryPlanCheck {
+
+    private static final String FIXTURE_TITLE = "__plan_check__";
+    private static final String FIXTURE_INVOICE = "plan-check"; // Also keeps ReceiptPipeline from rendering them
+    private static final int MIN_TICKETS = 100_000;
+
+    /**
+     * One hot query and how each of its tables must be read.
+     */
+    private static class PlannedQuery {
+        private final String name;
+        private final String sql;
+        private final Object[] params;
+        private final Map<String, String> expectedKeys = new LinkedHashMap<>(); // alias -> index, or null for any index
+
+        PlannedQuery(String name, String sql, Object... params) {
+            this.name = name;
+            this.sql = sql;
+            this.params = params;
+        }
+
+        PlannedQuery expect(String alias, String key) {
+            expectedKeys.put(alias, key);
+            return this;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String command = args.length > 0 ? args[0] : "check";
+        boolean passed = true;
+        try (Connection conn = new AuthenticationManager().connect()) {
+            switch (command) {
+                case "seed":
+                    seed(conn);
+                    break;
+                case "check":
+                    passed = check(conn);
+                    break;
+                case "drop":
+                    drop(conn);
+                    break;
+                default:
+                    System.out.println("Usage: java QueryPlanCheck [seed|check|drop]");
+            }
+        } finally {
+            AuthenticationManager.getPool().shutdown();
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(Connection conn) throws Exception {
+        long tickets = count(conn, "SELECT COUNT(*) FROM tickets");
+        if (tickets < MIN_TICKETS) {
+            System.out.println("Only " + tickets + " tickets; plans on a small database say little. Run 'seed' first.");
+        }
+        int runs = Integer.getInteger("bench.plan.runs", 20);
+        double budgetMillis = Integer.getInteger("bench.plan.maxMs", 50);
+
+        int scheduleId = busiestRecentSchedule(conn);
+        LocalDate day = LocalDate.now().minusDays(30);
+        Timestamp dayStart = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp dayEnd = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+
+        List<PlannedQuery> queries = Arrays.asList(
+                // SeatAvailability.ensureLoaded, behind every seat grid
+                new PlannedQuery("seats.grid",
+                        "SELECT seat_number FROM tickets t WHERE schedule_id = ? AND is_cancelled = FALSE", scheduleId)
+                        .expect("t", "idx_tickets_schedule_seat"),
+                // CheckoutWriter's guard against selling a seat twice
+                new PlannedQuery("checkout.seatCheck",
+                        "SELECT 1 FROM tickets t WHERE schedule_id = ? AND seat_number = ? AND is_cancelled = FALSE",
+                        scheduleId, SeatAvailability.seatLabel(0))
+                        .expect("t", "idx_tickets_schedule_seat"),
+                // SeatAvailability.warmUp
+                new PlannedQuery("seats.warmUp",
+                        "SELECT t.schedule_id, t.seat_number FROM tickets t JOIN schedule s ON t.schedule_id = s.schedule_id "
+                                + "WHERE t.is_cancelled = FALSE AND s.schedule_date >= CURDATE()")
+                        .expect("s", "idx_schedule_date")
+                        .expect("t", "idx_tickets_schedule_seat"),
+                new PlannedQuery("seats.view",
+                        "SELECT seats_available FROM available_seats WHERE schedule_id = ?", scheduleId)
+                        .expect("s", "PRIMARY")
+                        .expect("t", "idx_tickets_schedule_seat"),
+                // One day of sales, as the reports read it
+                new PlannedQuery("sales.day",
+                        "SELECT COUNT(*), SUM(total_amount) FROM sales s WHERE sale_date >= ? AND sale_date < ?", dayStart, dayEnd)
+                        .expect("s", "idx_sales_sale_date"),
+                // The same over hot and archived sales, as reports merge them
+                new PlannedQuery("salesAll.day",
+                        "SELECT COUNT(*), SUM(total_amount) FROM sales_all WHERE sale_date >= ? AND sale_date < ?", dayStart, dayEnd)
+                        .expect("sales", "idx_sales_sale_date")
+                        .expect("sales_archive", "idx_sales_sale_date"),
+                // The cashier's lookup of a show by movie, day and start time
+                new PlannedQuery("schedule.show",
+                        "SELECT sc.schedule_id FROM schedule sc JOIN movies m ON sc.movie_id = m.movie_id "
+                                + "JOIN sessions se ON sc.session_id = se.session_id "
+                                + "WHERE m.title = ? AND sc.schedule_date = ? AND se.start_time = ?",
+                        FIXTURE_TITLE, Date.valueOf(day), Time.valueOf("18:00:00"))
+                        .expect("sc", null),
+                // ScheduleGenerator's conflict check over the generated week
+                new PlannedQuery("schedule.week",
+                        "SELECT hall_id, session_id, schedule_date FROM schedule s WHERE schedule_date BETWEEN ? AND ?",
+                        Date.valueOf(day), Date.valueOf(day.plusDays(6)))
+                        .expect("s", "idx_schedule_date"));
+
+        boolean passed = true;
+        for (PlannedQuery query : queries) {
+            List<String> problems = explain(conn, query);
+            long[] samples = Bench.run(query.name, Math.max(1, runs / 4), runs, () -> execute(conn, query));
+            double medianMillis = samples[samples.length / 2] / 1e6;
+            if (medianMillis > budgetMillis) {
+                problems.add(String.format("median %.3f ms is over the %.0f ms budget", medianMillis, budgetMillis));
+            }
+            if (problems.isEmpty()) {
+                System.out.println("  PASS");
+            } else {
+                passed = false;
+                for (String problem : problems) {
+                    System.out.println("  FAIL " + problem);
+                }
+            }
+        }
+        System.out.println(passed ? "All query plans use their indexes" : "Query plan regressions found");
+        return passed;
+    }
+
+    // Checks each expected alias in the plan; other rows (derived tables, small lookups) are not judged
+    private static List<String> explain(Connection conn, PlannedQuery query) throws SQLException {
+        List<String> problems = new ArrayList<>();
+        Map<String, String> seen = new LinkedHashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + query.sql)) {
+            bind(stmt, query.params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String alias = rs.getString("table");
+                    if (!query.expectedKeys.containsKey(alias) || seen.containsKey(alias)) {
+                        continue;
+                    }
+                    String type = rs.getString("type");
+                    String key = rs.getString("key");
+                    seen.put(alias, key);
+                    if ("ALL".equals(type) || "index".equals(type)) {
+                        problems.add(alias + " is scanned (type " + type + ", key " + key + ")");
+                        continue;
+                    }
+                    String expected = query.expectedKeys.get(alias);
+                    if (expected != null && !expected.equals(key)) {
+                        problems.add(alias + " uses " + key + " instead of " + expected);
+                    }
+                }
+            }
+        }
+        for (String alias : query.expectedKeys.keySet()) {
+            if (!seen.containsKey(alias)) {
+                problems.add(alias + " does not appear in the plan");
+            }
+        }
+        return problems;
+    }
+
+    private static void execute(Connection conn, PlannedQuery query) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(query.sql)) {
+            bind(stmt, query.params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    // Read every row, as the callers do
+                }
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement stmt, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            stmt.setObject(i + 1, params[i]);
+        }
+    }
+
+    private static int busiestRecentSchedule(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT schedule_id FROM schedule WHERE schedule_date < CURDATE() "
+                     + "ORDER BY schedule_date DESC, schedule_id DESC LIMIT 1")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Fixture
+
+    private static void seed(Connection conn) throws SQLException {
+        if (fixtureMovieId(conn) != null) {
+            System.out.println("Already seeded; run 'drop' first to seed again");
+            return;
+        }
+        int hallCount = Integer.getInteger("bench.plan.halls", 4);
+        int capacity = Integer.getInteger("bench.plan.capacity", 250);
+        int days = Integer.getInteger("bench.plan.days", 365);
+        long started = System.nanoTime();
+        long changeMark = count(conn, "SELECT COALESCE(MAX(change_id), 0) FROM change_log");
+        Random random = new Random(42); // Same data on every run
+
+        int movieId = insertReturningId(conn, "INSERT INTO movies (title, duration) VALUES (?, 120)", FIXTURE_TITLE);
+        List<Integer> halls = new ArrayList<>();
+        for (int i = 0; i < hallCount; i++) {
+            // Own halls, so the fixture's shows never collide with the real schedule
+            halls.add(insertReturningId(conn, "INSERT INTO halls (name, capacity) VALUES ('HALL_B', ?)", capacity));
+        }
+        int cashierId = (int) count(conn, "SELECT MIN(user_id) FROM users");
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET SESSION cte_max_recursion_depth = " + (days + 1));
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO schedule (movie_id, hall_id, session_id, schedule_date) "
+                        + "WITH RECURSIVE days (d) AS (SELECT CURDATE() - INTERVAL ? DAY "
+                        + "UNION ALL SELECT d + INTERVAL 1 DAY FROM days WHERE d < CURDATE() - INTERVAL 1 DAY) "
+                        + "SELECT ?, h.hall_id, se.session_id, days.d FROM days CROSS JOIN halls h CROSS JOIN sessions se "
+                        + "WHERE h.hall_id IN (" + String.join(", ", Collections.nCopies(halls.size(), "?")) + ")")) {
+            List<Object> params = new ArrayList<>(List.of(days, movieId));
+            params.addAll(halls);
+            bind(stmt, params.toArray());
+            stmt.executeUpdate();
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        long sales = 0;
+        long tickets = 0;
+        try (PreparedStatement shows = conn.prepareStatement(
+                "SELECT sc.schedule_id, sc.schedule_date, se.start_time FROM schedule sc "
+                        + "JOIN sessions se ON sc.session_id = se.session_id WHERE sc.movie_id = ? ORDER BY sc.schedule_id")) {
+            shows.setInt(1, movieId);
+            List<Object[]> schedules = new ArrayList<>();
+            try (ResultSet rs = shows.executeQuery()) {
+                while (rs.next()) {
+                    schedules.add(new Object[]{rs.getInt(1), rs.getDate(2).toLocalDate().atTime(rs.getTime(3).toLocalTime())});
+                }
+            }
+            for (Object[] show : schedules) {
+                int[] counts = seedShow(conn, (Integer) show[0], (LocalDateTime) show[1], capacity, cashierId, random);
+                sales += counts[0];
+                tickets += counts[1];
+                conn.commit();
+            }
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+
+        deleteChangesAfter(conn, changeMark); // The triggers logged every seeded ticket
+        RevenueRollup.rebuild(conn);
+        analyze(conn);
+        System.out.printf("Seeded %d sales and %d tickets in %.1f s%n", sales, tickets, (System.nanoTime() - started) / 1e9);
+    }
+
+    // Sells 60-100% of one show in sales of 1-5 seats; about one ticket in twenty is cancelled
+    private static int[] seedShow(Connection conn, int scheduleId, LocalDateTime showTime, int capacity,
+                                  int cashierId, Random random) throws SQLException {
+        int sold = capacity * (60 + random.nextInt(41)) / 100;
+        List<Integer> groupSizes = new ArrayList<>();
+        for (int seats = 0; seats < sold; ) {
+            int size = Math.min(1 + random.nextInt(5), sold - seats);
+            groupSizes.add(size);
+            seats += size;
+        }
+
+        StringBuilder saleSql = new StringBuilder("INSERT INTO sales (cashier_id, sale_date, total_amount, tax_amount, invoice_path) VALUES ");
+        List<Object> saleParams = new ArrayList<>();
+        for (int i = 0; i < groupSizes.size(); i++) {
+            saleSql.append(i == 0 ? "(?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+            BigDecimal net = BigDecimal.valueOf(100L * groupSizes.get(i));
+            saleParams.add(cashierId);
+            saleParams.add(Timestamp.valueOf(showTime.minusMinutes(random.nextInt(7 * 24 * 60))));
+            saleParams.add(net.multiply(new BigDecimal("1.20")));
+            saleParams.add(net.multiply(new BigDecimal("0.20")));
+            saleParams.add(FIXTURE_INVOICE);
+        }
+        List<Integer> saleIds = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(saleSql.toString(), Statement.RETURN_GENERATED_KEYS)) {
+            bind(stmt, saleParams.toArray());
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                while (keys.next()) {
+                    saleIds.add(keys.getInt(1));
+                }
+            }
+        }
+
+        StringBuilder ticketSql = new StringBuilder(
+                "INSERT INTO tickets (sale_id, schedule_id, seat_number, base_price, discount_applied, is_cancelled) VALUES ");
+        List<Object> ticketParams = new ArrayList<>();
+        int seat = 0;
+        for (int i = 0; i < groupSizes.size(); i++) {
+            for (int j = 0; j < groupSizes.get(i); j++, seat++) {
+                ticketSql.append(seat == 0 ? "(?, ?, ?, 100.00, ?, ?)" : ", (?, ?, ?, 100.00, ?, ?)");
+                ticketParams.add(saleIds.get(i));
+                ticketParams.add(scheduleId);
+                ticketParams.add(SeatAvailability.seatLabel(seat));
+                ticketParams.add(random.nextInt(5) == 0 ? new BigDecimal("50.00") : BigDecimal.ZERO);
+                ticketParams.add(random.nextInt(20) == 0);
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(ticketSql.toString())) {
+            bind(stmt, ticketParams.toArray());
+            stmt.executeUpdate();
+        }
+        return new int[]{saleIds.size(), sold};
+    }
+
+    private static void drop(Connection conn) throws SQLException {
+        Integer movieId = fixtureMovieId(conn);
+        if (movieId == null) {
+            System.out.println("Nothing to drop");
+            return;
+        }
+        long changeMark = count(conn, "SELECT COALESCE(MAX(change_id), 0) FROM change_log");
+        List<Integer> schedules = new ArrayList<>();
+        List<Integer> halls = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT schedule_id, hall_id FROM schedule WHERE movie_id = ?")) {
+            stmt.setInt(1, movieId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    schedules.add(rs.getInt(1));
+                    if (!halls.contains(rs.getInt(2))) {
+                        halls.add(rs.getInt(2));
+                    }
+                }
+            }
+        }
+        // One show at a time keeps each transaction small; SalesArchiver may have moved part of the fixture
+        for (String suffix : new String[]{"", "_archive"}) {
+            try (PreparedStatement findSales = conn.prepareStatement("SELECT DISTINCT sale_id FROM tickets" + suffix + " WHERE schedule_id = ?");
+                 PreparedStatement deleteTickets = conn.prepareStatement("DELETE FROM tickets" + suffix + " WHERE schedule_id = ?")) {
+                for (int scheduleId : schedules) {
+                    // Tickets reference their sale, so they go first
+                    List<Integer> saleIds = new ArrayList<>();
+                    findSales.setInt(1, scheduleId);
+                    try (ResultSet rs = findSales.executeQuery()) {
+                        while (rs.next()) {
+                            saleIds.add(rs.getInt(1));
+                        }
+                    }
+                    deleteTickets.setInt(1, scheduleId);
+                    deleteTickets.executeUpdate();
+                    deleteByIds(conn, "sales" + suffix, "sale_id", saleIds);
+                }
+            }
+        }
+        deleteByIds(conn, "schedule", "schedule_id", schedules);
+        deleteByIds(conn, "halls", "hall_id", halls);
+        deleteByIds(conn, "movies", "movie_id", List.of(movieId));
+        deleteChangesAfter(conn, changeMark);
+        RevenueRollup.rebuild(conn);
+        analyze(conn);
+        System.out.println("Dropped " + schedules.size() + " fixture shows");
+    }
+
+    private static void deleteByIds(Connection conn, String table, String idColumn, List<Integer> ids) throws SQLException {
+        for (int from = 0; from < ids.size(); from += 1000) {
+            List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + 1000));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "DELETE FROM " + table + " WHERE " + idColumn + " IN (" + placeholders + ")")) {
+                bind(stmt, chunk.toArray());
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    // Keeps the change feed of running terminals from replaying the fixture
+    private static void deleteChangesAfter(Connection conn, long changeId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM change_log WHERE change_id > ? LIMIT 10000")) {
+            stmt.setLong(1, changeId);
+            while (stmt.executeUpdate() > 0) {
+                // Until nothing is left
+            }
+        }
+    }
+
+    private static void analyze(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE TABLE sales, tickets, schedule, sales_archive, tickets_archive");
+        }
+    }
+
+    private static Integer fixtureMovieId(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT movie_id FROM movies WHERE title = ?")) {
+            stmt.setString(1, FIXTURE_TITLE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    private static int insertReturningId(Connection conn, String sql, Object param) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setObject(1, param);
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                keys.next();
+                return keys.getInt(1);
+            }
+        }
+    }
+
+    private static long count(Connection conn, String query) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
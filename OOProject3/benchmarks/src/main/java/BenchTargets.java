@@ -0,0 +1,289 @@
+import group5.bench.Targets;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The application side of {@link Targets}: calls into the default-package classes the JMH
+ * benchmarks in group5.bench cannot name. Loaded by {@link Targets#load()}.
+ */
+public class BenchTargets implements Targets {
+
+    // Seed sizes: enough rows that an unpaged or unindexed read shows up in the numbers
+    private static final int PRODUCTS = 5000;
+    private static final int SALES = 20000;
+    private static final int SALES_DAYS = 730;
+
+    private static final int TICKETS_PER_ORDER = 6;
+    private static final int PRODUCTS_PER_ORDER = 4;
+    private static final BigDecimal TICKET_PRICE = new BigDecimal("100.00");
+    private static final BigDecimal PRODUCT_PRICE = new BigDecimal("2.50");
+    private static final BigDecimal TAX_RATE = new BigDecimal("20.00");
+    private static final PricingSnapshot PRICING = new PricingSnapshot(1, TICKET_PRICE, BigDecimal.ZERO, BigDecimal.ZERO, TAX_RATE, TAX_RATE);
+
+    private int cashierId;
+    private ShoppingCart cart;
+
+    @Override
+    public void seed(Connection conn) throws SQLException {
+        MigrationRunner.migrate(conn);
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT user_id FROM users WHERE username = 'cashier1'")) {
+            rs.next();
+            cashierId = rs.getInt(1);
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO products (name, type, price, stock_quantity) VALUES (?, ?, ?, ?)")) {
+            String[] types = {"snack", "drink", "souvenir"};
+            for (int i = 0; i < PRODUCTS; i++) {
+                stmt.setString(1, "Product " + i);
+                stmt.setString(2, types[i % types.length]);
+                stmt.setBigDecimal(3, PRODUCT_PRICE);
+                stmt.setInt(4, 1000);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+
+        // Sales history for the revenue totals, spread over the last two years
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO sales (cashier_id, sale_date, total_amount, tax_amount) VALUES (?, ?, ?, ?)")) {
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < SALES; i++) {
+                stmt.setInt(1, cashierId);
+                stmt.setTimestamp(2, Timestamp.valueOf(now.minusDays(i % SALES_DAYS).minusMinutes(i % 600)));
+                stmt.setBigDecimal(3, new BigDecimal("120.00"));
+                stmt.setBigDecimal(4, new BigDecimal("20.00"));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        RevenueRollup.rebuild(conn);
+
+        // Tomorrow's first HALL_B show, half sold
+        int movieId = insert(conn, "INSERT INTO movies (title) VALUES ('Seat benchmark')");
+        int scheduleId;
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO schedule (movie_id, hall_id, session_id, schedule_date) "
+                + "SELECT ?, h.hall_id, MIN(se.session_id), ? FROM halls h, sessions se WHERE h.name = 'HALL_B' GROUP BY h.hall_id",
+                Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, movieId);
+            stmt.setDate(2, Date.valueOf(LocalDate.now().plusDays(1)));
+            stmt.executeUpdate();
+            scheduleId = generatedKey(stmt);
+        }
+        int saleId = insert(conn, "INSERT INTO sales (cashier_id, total_amount, tax_amount) VALUES (" + cashierId + ", 0, 0)");
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO tickets (sale_id, schedule_id, seat_number, base_price) VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < 48; i += 2) {
+                stmt.setInt(1, saleId);
+                stmt.setInt(2, scheduleId);
+                stmt.setString(3, SeatAvailability.seatLabel(i));
+                stmt.setBigDecimal(4, TICKET_PRICE);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    @Override
+    public Connection connect() throws SQLException {
+        return new AuthenticationManager().connect();
+    }
+
+    @Override
+    public void shutdown() {
+        InventoryLedger.getInstance().shutdown(); // Lands the written-behind stock while the pool is still open
+        AuthenticationManager.getPool().shutdown();
+    }
+
+    @Override
+    public String login(String username, String password) {
+        return AuthenticationManager.authenticate(username, password);
+    }
+
+    @Override
+    public int inventoryPage(Connection conn, int limit) throws SQLException {
+        // Same pager as ManagerGUI's inventory tab, without the table
+        KeysetPager<Object[]> pager = new KeysetPager<>("products", "product_id, name, type, stock_quantity, price, updated_at",
+                "product_id", null, List.of(), List.of("name", "type"), BenchTargets::readProduct);
+        return pager.fetch(conn, null, limit).getRows().size();
+    }
+
+    @Override
+    public int inventoryFullScan(Connection conn) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM products")) {
+            while (rs.next()) {
+                rows.add(readProduct(rs));
+            }
+        }
+        return rows.size();
+    }
+
+    private static Object[] readProduct(ResultSet rs) throws SQLException {
+        return new Object[]{rs.getInt("product_id"), rs.getString("name"), rs.getString("type"),
+                rs.getInt("stock_quantity"), rs.getDouble("price"), rs.getTimestamp("updated_at")};
+    }
+
+    @Override
+    public int busySchedule(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT s.schedule_id FROM schedule s JOIN movies m ON s.movie_id = m.movie_id "
+                     + "WHERE m.title = 'Seat benchmark'")) {
+            if (!rs.next()) {
+                throw new SQLException("The seat benchmark schedule was not seeded");
+            }
+            return rs.getInt(1);
+        }
+    }
+
+    @Override
+    public int vacantSeatsCached(Connection conn, int scheduleId) throws SQLException {
+        SeatAvailability seats = SeatAvailability.getInstance();
+        seats.ensureLoaded(conn, scheduleId);
+        int vacant = 0;
+        for (int i = 0; i < seats.getCapacity(scheduleId); i++) {
+            if (!seats.isOccupied(scheduleId, SeatAvailability.seatLabel(i))) {
+                vacant++;
+            }
+        }
+        return vacant;
+    }
+
+    @Override
+    public int vacantSeatsView(Connection conn, int scheduleId) throws SQLException {
+        int vacant = 0;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM available_seats WHERE schedule_id = ?")) {
+            stmt.setInt(1, scheduleId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    vacant++;
+                }
+            }
+        }
+        return vacant;
+    }
+
+    @Override
+    public void prepareCheckout(Connection conn) throws SQLException {
+        int movieId = insert(conn, "INSERT INTO movies (title) VALUES ('Checkout benchmark')");
+        // Far-future date so the unique (hall, session, date) key never clashes with the seeded shows
+        int scheduleId = insert(conn, "INSERT INTO schedule (movie_id, hall_id, session_id, schedule_date) "
+                + "SELECT " + movieId + ", MIN(h.hall_id), MIN(se.session_id), '2999-01-01' FROM halls h, sessions se");
+        cart = new ShoppingCart();
+        for (int i = 0; i < TICKETS_PER_ORDER; i++) {
+            cart.addTicket(scheduleId, SeatAvailability.seatLabel(i), TICKET_PRICE, BigDecimal.ZERO);
+        }
+        for (int i = 0; i < PRODUCTS_PER_ORDER; i++) {
+            int productId = insert(conn, "INSERT INTO products (name, type, price, stock_quantity) "
+                    + "VALUES ('Benchmark snack " + i + "', 'snack', " + PRODUCT_PRICE + ", 100000000)");
+            cart.addProduct(productId, "Benchmark snack " + i, 1, PRODUCT_PRICE);
+        }
+    }
+
+    @Override
+    public int checkoutBatched(Connection conn) throws SQLException {
+        return CheckoutWriter.writeSale(conn, cashierId, null, cart, PRICING);
+    }
+
+    // The straightforward version: auto-commit on, one round trip per row, read-then-write checks
+    @Override
+    public int checkoutNaive(Connection conn) throws SQLException {
+        int saleId;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO sales (cashier_id, total_amount, tax_amount) VALUES (?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, cashierId);
+            stmt.setBigDecimal(2, cart.getTotal(TAX_RATE, TAX_RATE));
+            stmt.setBigDecimal(3, cart.getTax(TAX_RATE, TAX_RATE));
+            stmt.executeUpdate();
+            saleId = generatedKey(stmt);
+        }
+        for (ShoppingCart.TicketLine ticket : cart.getTickets()) {
+            try (PreparedStatement check = conn.prepareStatement(
+                    "SELECT COUNT(*) FROM tickets WHERE schedule_id = ? AND seat_number = ? AND is_cancelled = FALSE")) {
+                check.setInt(1, ticket.getScheduleId());
+                check.setString(2, ticket.getSeatNumber());
+                try (ResultSet rs = check.executeQuery()) {
+                    rs.next();
+                    if (rs.getInt(1) > 0) {
+                        throw new SQLException("Seat already sold: " + ticket.getSeatNumber());
+                    }
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO tickets (sale_id, schedule_id, seat_number, base_price, discount_applied) VALUES (?, ?, ?, ?, ?)")) {
+                stmt.setInt(1, saleId);
+                stmt.setInt(2, ticket.getScheduleId());
+                stmt.setString(3, ticket.getSeatNumber());
+                stmt.setBigDecimal(4, ticket.getBasePrice());
+                stmt.setBigDecimal(5, ticket.getDiscountRate());
+                stmt.executeUpdate();
+            }
+        }
+        for (ShoppingCart.ProductLine product : cart.getProducts()) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO sale_items (sale_id, product_id, quantity, unit_price) VALUES (?, ?, ?, ?)")) {
+                stmt.setInt(1, saleId);
+                stmt.setInt(2, product.getProductId());
+                stmt.setInt(3, product.getQuantity());
+                stmt.setBigDecimal(4, product.getUnitPrice());
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE products SET stock_quantity = stock_quantity - ? WHERE product_id = ?")) {
+                stmt.setInt(1, product.getQuantity());
+                stmt.setInt(2, product.getProductId());
+                stmt.executeUpdate();
+            }
+        }
+        return saleId;
+    }
+
+    @Override
+    public void releaseSeats(Connection conn, int saleId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE tickets SET is_cancelled = TRUE WHERE sale_id = ?")) {
+            stmt.setInt(1, saleId);
+            stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public Object revenueRollup(Connection conn) throws SQLException {
+        return RevenueRollup.loadAllTime(conn);
+    }
+
+    @Override
+    public Object revenueFullScan(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*), SUM(total_amount), SUM(tax_amount) FROM sales_all")) {
+            rs.next();
+            return rs.getBigDecimal(2);
+        }
+    }
+
+    private static int insert(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.executeUpdate();
+            return generatedKey(stmt);
+        }
+    }
+
+    private static int generatedKey(Statement stmt) throws SQLException {
+        try (ResultSet keys = stmt.getGeneratedKeys()) {
+            keys.next();
+            return keys.getInt(1);
+        }
+    }
+}
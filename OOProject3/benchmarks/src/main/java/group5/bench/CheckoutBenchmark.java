@@ -0,0 +1,58 @@
+package group5.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One order of six tickets and four products: CheckoutWriter, against one statement per row with
+ * auto-commit on. The seats are released after every call, outside the timing, so each order
+ * sells the same seats again.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CheckoutBenchmark {
+
+    private int saleId = -1;
+
+    @Setup(Level.Trial)
+    public void prepare(Connected c) throws SQLException {
+        c.targets.prepareCheckout(c.conn);
+    }
+
+    @TearDown(Level.Invocation)
+    public void release(Connected c) throws SQLException {
+        if (saleId >= 0) {
+            c.targets.releaseSeats(c.conn, saleId);
+            saleId = -1;
+        }
+    }
+
+    @Benchmark
+    public int batched(Connected c) throws SQLException {
+        saleId = c.targets.checkoutBatched(c.conn);
+        return saleId;
+    }
+
+    @Benchmark
+    public int naive(Connected c) throws SQLException {
+        saleId = c.targets.checkoutNaive(c.conn);
+        return saleId;
+    }
+}
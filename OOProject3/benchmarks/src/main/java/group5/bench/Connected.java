@@ -0,0 +1,31 @@
+package group5.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+
+/**
+ * A pooled connection held by one benchmark thread for the whole trial, so the reads do not
+ * time the pool; {@link LoginBenchmark} is the one that does.
+ */
+@State(Scope.Thread)
+public class Connected {
+
+    Targets targets;
+    Connection conn;
+
+    @Setup(Level.Trial)
+    public void open(EmbeddedDatabase database) throws Exception {
+        targets = database.targets();
+        conn = targets.connect();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        conn.close();
+    }
+}
@@ -0,0 +1,61 @@
+package group5.bench;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+
+/**
+ * A MariaDB server started for one benchmark fork, on a free port and a throw-away data directory,
+ * with the schema created by MigrationRunner and the seed rows from {@link Targets#seed}.
+ * The application's pool is pointed at it through the {@code cinema.jdbc.*} properties.
+ */
+@State(Scope.Benchmark)
+public class EmbeddedDatabase {
+
+    private DB db;
+    private Targets targets;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(0); // Any free port
+        if ("root".equals(System.getProperty("user.name"))) {
+            config.addArg("--user=root"); // mysqld refuses to run as root otherwise, e.g. in containers
+        }
+        db = DB.newEmbeddedDB(config.build());
+        db.start();
+
+        System.setProperty("cinema.jdbc.url", "jdbc:mysql://localhost:" + config.getPort() + "/Group5");
+        System.setProperty("cinema.jdbc.user", "root");
+        System.setProperty("cinema.jdbc.password", "");
+        try {
+            targets = Targets.load();
+            try (Connection conn = targets.connect()) {
+                targets.seed(conn);
+            }
+        } catch (Exception | Error e) {
+            stop(); // JMH skips the tear-down of a failed set-up, and a running server keeps the fork alive
+            throw e;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        if (targets != null) {
+            targets.shutdown();
+        }
+        if (db != null) {
+            db.stop();
+        }
+    }
+
+    public Targets targets() {
+        return targets;
+    }
+}
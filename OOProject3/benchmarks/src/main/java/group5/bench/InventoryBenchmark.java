@@ -0,0 +1,35 @@
+package group5.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inventory tab refresh: the first keyset page ManagerGUI loads, against reading every product.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InventoryBenchmark {
+
+    private static final int PAGE_SIZE = 200; // ManagerGUI's default cinema.tables.pageSize
+
+    @Benchmark
+    public int firstPage(Connected c) throws SQLException {
+        return c.targets.inventoryPage(c.conn, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public int fullScan(Connected c) throws SQLException {
+        return c.targets.inventoryFullScan(c.conn);
+    }
+}
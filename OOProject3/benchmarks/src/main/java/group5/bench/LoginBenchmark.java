@@ -0,0 +1,32 @@
+package group5.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login as the seeded cashier, after the first call has cached the credentials and upgraded the
+ * password hash. Dominated by hashing the entered password, which is deliberate.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginBenchmark {
+
+    @Benchmark
+    public String login(EmbeddedDatabase database) {
+        String role = database.targets().login("cashier1", "cashier1");
+        if (role == null) {
+            throw new IllegalStateException("The seeded cashier could not log in");
+        }
+        return role;
+    }
+}
@@ -0,0 +1,33 @@
+package group5.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * All-time revenue for the manager's revenue tab: the rollup tables, against summing sales_all.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RevenueBenchmark {
+
+    @Benchmark
+    public Object rollup(Connected c) throws SQLException {
+        return c.targets.revenueRollup(c.conn);
+    }
+
+    @Benchmark
+    public Object fullScan(Connected c) throws SQLException {
+        return c.targets.revenueFullScan(c.conn);
+    }
+}
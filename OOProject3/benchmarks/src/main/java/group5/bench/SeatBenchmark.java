@@ -0,0 +1,46 @@
+package group5.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vacant seats of a half-sold HALL_B show: the bitset SeatAvailability keeps in memory, against
+ * the available_seats view the cashier screen used to query.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SeatBenchmark {
+
+    private int scheduleId;
+
+    @Setup(Level.Trial)
+    public void findSchedule(Connected c) throws SQLException {
+        scheduleId = c.targets.busySchedule(c.conn);
+    }
+
+    @Benchmark
+    public int cached(Connected c) throws SQLException {
+        return c.targets.vacantSeatsCached(c.conn, scheduleId);
+    }
+
+    @Benchmark
+    public int view(Connected c) throws SQLException {
+        return c.targets.vacantSeatsView(c.conn, scheduleId);
+    }
+}
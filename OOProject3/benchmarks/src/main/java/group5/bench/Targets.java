@@ -0,0 +1,63 @@
+package group5.bench;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The application code each benchmark calls. The application classes live in the default package,
+ * which named packages cannot import, so the implementation ({@code BenchTargets}, also in the
+ * default package) is loaded by name.
+ */
+public interface Targets {
+
+    /**
+     * Loads the implementation. Call only after {@link EmbeddedDatabase} has set the
+     * {@code cinema.jdbc.*} properties, since the connection pool reads them when it is created.
+     */
+    static Targets load() {
+        try {
+            return (Targets) Class.forName("BenchTargets").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchTargets is missing from the classpath", e);
+        }
+    }
+
+    /** Creates the schema and adds enough rows for the reads to be worth timing. */
+    void seed(Connection conn) throws SQLException;
+
+    /** Borrows a connection from the application's pool. */
+    Connection connect() throws SQLException;
+
+    /** Closes the application's pool. */
+    void shutdown();
+
+    // Login, including the pooled connection the login screen borrows
+    String login(String username, String password);
+
+    // The inventory tab: its first keyset page, and the unpaged read it replaced
+    int inventoryPage(Connection conn, int limit) throws SQLException;
+
+    int inventoryFullScan(Connection conn) throws SQLException;
+
+    // Seat lookups for a whole hall: the cached bitset, and the available_seats view it replaced
+    int busySchedule(Connection conn) throws SQLException;
+
+    int vacantSeatsCached(Connection conn, int scheduleId) throws SQLException;
+
+    int vacantSeatsView(Connection conn, int scheduleId) throws SQLException;
+
+    // Checkout of the same cart: CheckoutWriter, and one statement per row with auto-commit on
+    void prepareCheckout(Connection conn) throws SQLException;
+
+    int checkoutBatched(Connection conn) throws SQLException;
+
+    int checkoutNaive(Connection conn) throws SQLException;
+
+    /** Cancels the tickets of a sale, so the next checkout can sell the same seats. */
+    void releaseSeats(Connection conn, int saleId) throws SQLException;
+
+    // Revenue totals: the rollup tables, and summing every sale, hot and archived
+    Object revenueRollup(Connection conn) throws SQLException;
+
+    Object revenueFullScan(Connection conn) throws SQLException;
+}
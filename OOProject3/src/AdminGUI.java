@@ -3,16 +3,25 @@ import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public class AdminGUI {
 
     private static AuthenticationManager dbFacade = new AuthenticationManager();
+    private static final String ANY_HALL = "Any hall";
 
     public static void display(Stage stage, String username) {
         // Main layout
@@ -45,6 +54,7 @@ public class AdminGUI {
         stage.show();
     }
 
+    @SuppressWarnings("try")
     private static void showAddMovieDialog() {
         Stage dialog = new Stage();
         dialog.setTitle("Add New Movie");
@@ -59,30 +69,52 @@ public class AdminGUI {
         TextField posterField = new TextField();
         posterField.setPromptText("Poster Path");
         TextField genreField = new TextField();
-        genreField.setPromptText("Genre");
-        TextArea summaryArea = new TextArea();
-        summaryArea.setPromptText("Summary");
+        genreField.setPromptText("Genres, comma separated");
+        TextField summaryField = new TextField();
+        summaryField.setPromptText("Summary Path");
+        TextField durationField = new TextField("120");
+        durationField.setPromptText("Running time in minutes");
 
         Button addButton = new Button("Add Movie");
         addButton.setOnAction(e -> {
             String title = titleField.getText();
             String poster = posterField.getText();
-            String genre = genreField.getText();
-            String summary = summaryArea.getText();
+            String genres = genreField.getText();
+            String summary = summaryField.getText();
 
-            if (title.isEmpty() || poster.isEmpty() || genre.isEmpty() || summary.isEmpty()) {
+            if (title.isEmpty() || poster.isEmpty() || genres.isEmpty() || summary.isEmpty()) {
                 showAlert("Error", "All fields must be filled.");
                 return;
             }
+            int duration = parseDuration(durationField.getText());
+            if (duration <= 0) {
+                showAlert("Error", "Duration must be a whole number of minutes.");
+                return;
+            }
 
-            try (Connection conn = dbFacade.connect()) {
-                String query = "INSERT INTO movies (title, poster, genre, summary) VALUES (?, ?, ?, ?)";
-                PreparedStatement stmt = conn.prepareStatement(query);
-                stmt.setString(1, title);
-                stmt.setString(2, poster);
-                stmt.setString(3, genre);
-                stmt.setString(4, summary);
-                stmt.executeUpdate();
+            try (UiAction.Scope ignored = UiAction.enter("AdminGUI.addButton");
+                 Connection conn = dbFacade.connect()) {
+                // The movie and its genres are saved together or not at all
+                conn.setAutoCommit(false);
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO movies (title, poster_path, summary_path, duration) VALUES (?, ?, ?, ?)",
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    stmt.setString(1, title);
+                    stmt.setString(2, poster);
+                    stmt.setString(3, summary);
+                    stmt.setInt(4, duration); // The schedule generator only puts it in sessions it fits
+                    stmt.executeUpdate();
+                    try (ResultSet keys = stmt.getGeneratedKeys()) {
+                        keys.next();
+                        saveGenres(conn, keys.getInt(1), genres);
+                    }
+                    conn.commit();
+                } catch (SQLException ex) {
+                    conn.rollback();
+                    throw ex;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
                 showAlert("Success", "Movie added successfully!");
                 dialog.close();
             } catch (SQLException ex) {
@@ -92,15 +124,17 @@ public class AdminGUI {
 
         grid.addRow(0, new Label("Title:"), titleField);
         grid.addRow(1, new Label("Poster:"), posterField);
-        grid.addRow(2, new Label("Genre:"), genreField);
-        grid.addRow(3, new Label("Summary:"), summaryArea);
-        grid.add(addButton, 1, 4);
+        grid.addRow(2, new Label("Genres:"), genreField);
+        grid.addRow(3, new Label("Summary:"), summaryField);
+        grid.addRow(4, new Label("Duration (min):"), durationField);
+        grid.add(addButton, 1, 5);
 
         Scene scene = new Scene(grid, 400, 300);
         dialog.setScene(scene);
         dialog.show();
     }
 
+    @SuppressWarnings("try")
     private static void showUpdateMovieDialog() {
         Stage dialog = new Stage();
         dialog.setTitle("Update Existing Movie");
@@ -115,43 +149,77 @@ public class AdminGUI {
         TextField posterField = new TextField();
         posterField.setPromptText("New Poster Path");
         TextField genreField = new TextField();
-        genreField.setPromptText("New Genre");
-        TextArea summaryArea = new TextArea();
-        summaryArea.setPromptText("New Summary");
+        genreField.setPromptText("New Genres, comma separated");
+        TextField summaryField = new TextField();
+        summaryField.setPromptText("New Summary Path");
+        TextField durationField = new TextField();
+        durationField.setPromptText("Running time in minutes");
 
         Button updateButton = new Button("Update Movie");
 
-        // Load movie titles into ComboBox
-        try (Connection conn = dbFacade.connect()) {
-            String query = "SELECT title FROM movies";
-            PreparedStatement stmt = conn.prepareStatement(query);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                movieComboBox.getItems().add(rs.getString("title"));
+        // Load movie titles into ComboBox, with their durations to show on selection
+        Map<String, Integer> durations = new LinkedHashMap<>();
+        try (UiAction.Scope ignored = UiAction.enter("AdminGUI.showUpdateMovieDialog");
+             Connection conn = dbFacade.connect()) {
+            String query = "SELECT title, duration FROM movies";
+            try (PreparedStatement stmt = conn.prepareStatement(query);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    movieComboBox.getItems().add(rs.getString("title"));
+                    durations.put(rs.getString("title"), rs.getInt("duration"));
+                }
             }
         } catch (SQLException ex) {
             showAlert("Error", "Failed to load movies: " + ex.getMessage());
         }
+        movieComboBox.setOnAction(e -> {
+            Integer duration = durations.get(movieComboBox.getValue());
+            durationField.setText(duration == null ? "" : String.valueOf(duration));
+        });
 
         updateButton.setOnAction(e -> {
             String selectedMovie = movieComboBox.getValue();
             String newPoster = posterField.getText();
-            String newGenre = genreField.getText();
-            String newSummary = summaryArea.getText();
+            String newGenres = genreField.getText();
+            String newSummary = summaryField.getText();
 
-            if (selectedMovie == null || newPoster.isEmpty() || newGenre.isEmpty() || newSummary.isEmpty()) {
+            if (selectedMovie == null || newPoster.isEmpty() || newGenres.isEmpty() || newSummary.isEmpty()) {
                 showAlert("Error", "All fields must be filled.");
                 return;
             }
+            int newDuration = parseDuration(durationField.getText());
+            if (newDuration <= 0) {
+                showAlert("Error", "Duration must be a whole number of minutes.");
+                return;
+            }
 
-            try (Connection conn = dbFacade.connect()) {
-                String query = "UPDATE movies SET poster = ?, genre = ?, summary = ? WHERE title = ?";
-                PreparedStatement stmt = conn.prepareStatement(query);
-                stmt.setString(1, newPoster);
-                stmt.setString(2, newGenre);
-                stmt.setString(3, newSummary);
-                stmt.setString(4, selectedMovie);
-                stmt.executeUpdate();
+            try (UiAction.Scope ignored = UiAction.enter("AdminGUI.updateButton");
+                 Connection conn = dbFacade.connect()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement find = conn.prepareStatement("SELECT movie_id FROM movies WHERE title = ?");
+                     PreparedStatement update = conn.prepareStatement(
+                             "UPDATE movies SET poster_path = ?, summary_path = ?, duration = ? WHERE movie_id = ?")) {
+                    find.setString(1, selectedMovie);
+                    int movieId;
+                    try (ResultSet rs = find.executeQuery()) {
+                        if (!rs.next()) {
+                            throw new SQLException("Movie " + selectedMovie + " no longer exists");
+                        }
+                        movieId = rs.getInt(1);
+                    }
+                    update.setString(1, newPoster);
+                    update.setString(2, newSummary);
+                    update.setInt(3, newDuration);
+                    update.setInt(4, movieId);
+                    update.executeUpdate();
+                    saveGenres(conn, movieId, newGenres);
+                    conn.commit();
+                } catch (SQLException ex) {
+                    conn.rollback();
+                    throw ex;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
                 showAlert("Success", "Movie updated successfully!");
                 dialog.close();
             } catch (SQLException ex) {
@@ -161,17 +229,197 @@ public class AdminGUI {
 
         grid.addRow(0, new Label("Select Movie:"), movieComboBox);
         grid.addRow(1, new Label("New Poster:"), posterField);
-        grid.addRow(2, new Label("New Genre:"), genreField);
-        grid.addRow(3, new Label("New Summary:"), summaryArea);
-        grid.add(updateButton, 1, 4);
+        grid.addRow(2, new Label("New Genres:"), genreField);
+        grid.addRow(3, new Label("New Summary:"), summaryField);
+        grid.addRow(4, new Label("Duration (min):"), durationField);
+        grid.add(updateButton, 1, 5);
 
         Scene scene = new Scene(grid, 400, 300);
         dialog.setScene(scene);
         dialog.show();
     }
 
+    @SuppressWarnings("try")
     private static void showScheduleDialog() {
-        // Implementation for creating a schedule
+        Stage dialog = new Stage();
+        dialog.setTitle("Create Monthly Schedule");
+
+        GridPane grid = new GridPane();
+        grid.setPadding(new Insets(10));
+        grid.setVgap(10);
+        grid.setHgap(10);
+
+        // Default to the whole of next month
+        LocalDate firstOfNextMonth = LocalDate.now().withDayOfMonth(1).plusMonths(1);
+        DatePicker fromPicker = new DatePicker(firstOfNextMonth);
+        DatePicker toPicker = new DatePicker(firstOfNextMonth.plusMonths(1).minusDays(1));
+
+        ListView<String> movieList = new ListView<>();
+        movieList.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        VBox hallBoxes = new VBox(5);
+
+        Map<String, ScheduleGenerator.Movie> movies = new LinkedHashMap<>();
+        Map<CheckBox, Integer> hallChecks = new LinkedHashMap<>();
+        Map<String, Integer> hallIdsByName = new LinkedHashMap<>();
+        Map<String, String> preferredHalls = new LinkedHashMap<>(); // Movie title -> hall name, for this run
+        List<ScheduleGenerator.Session> sessions;
+
+        // Load movies, halls and sessions
+        try (UiAction.Scope ignored = UiAction.enter("AdminGUI.showScheduleDialog");
+             Connection conn = dbFacade.connect()) {
+            for (ScheduleGenerator.Movie movie : ScheduleGenerator.loadMovies(conn)) {
+                movies.put(movie.getTitle(), movie);
+            }
+            for (Map.Entry<Integer, String> hall : ScheduleGenerator.loadHalls(conn).entrySet()) {
+                CheckBox check = new CheckBox(hall.getValue());
+                check.setSelected(true);
+                hallChecks.put(check, hall.getKey());
+                hallIdsByName.put(hall.getValue(), hall.getKey());
+            }
+            sessions = ScheduleGenerator.loadSessions(conn);
+        } catch (SQLException ex) {
+            showAlert("Error", "Failed to load schedule data: " + ex.getMessage());
+            return;
+        }
+        movieList.getItems().addAll(movies.keySet());
+        hallBoxes.getChildren().addAll(hallChecks.keySet());
+
+        // Shows each movie's running time and, if set, the only hall it is scheduled in
+        movieList.setCellFactory(list -> new ListCell<String>() {
+            @Override
+            protected void updateItem(String title, boolean empty) {
+                super.updateItem(title, empty);
+                if (empty || title == null) {
+                    setText(null);
+                } else {
+                    String hall = preferredHalls.get(title);
+                    setText(title + " (" + movies.get(title).getDuration() + " min)" + (hall == null ? "" : " - " + hall + " only"));
+                }
+            }
+        });
+
+        // Hall preference for the selected movies
+        ComboBox<String> hallPreference = new ComboBox<>();
+        hallPreference.getItems().add(ANY_HALL);
+        hallPreference.getItems().addAll(hallIdsByName.keySet());
+        hallPreference.setValue(ANY_HALL);
+        Button preferButton = new Button("Set for Selected Movies");
+        preferButton.setOnAction(e -> {
+            for (String title : movieList.getSelectionModel().getSelectedItems()) {
+                if (ANY_HALL.equals(hallPreference.getValue())) {
+                    preferredHalls.remove(title);
+                } else {
+                    preferredHalls.put(title, hallPreference.getValue());
+                }
+            }
+            movieList.refresh();
+        });
+        HBox preferenceBox = new HBox(5, hallPreference, preferButton);
+
+        Button generateButton = new Button("Generate Schedule");
+        generateButton.setOnAction(e -> {
+            LocalDate from = fromPicker.getValue();
+            LocalDate to = toPicker.getValue();
+            List<ScheduleGenerator.Movie> selectedMovies = new ArrayList<>();
+            for (String title : movieList.getSelectionModel().getSelectedItems()) {
+                selectedMovies.add(movies.get(title).withPreferredHall(hallIdsByName.get(preferredHalls.get(title))));
+            }
+            List<Integer> hallIds = new ArrayList<>();
+            hallChecks.forEach((check, hallId) -> {
+                if (check.isSelected()) {
+                    hallIds.add(hallId);
+                }
+            });
+
+            if (from == null || to == null || selectedMovies.isEmpty() || hallIds.isEmpty()) {
+                showAlert("Error", "Select a date range, at least one movie and at least one hall.");
+                return;
+            }
+            if (from.isAfter(to)) {
+                showAlert("Error", "The start date must not be after the end date.");
+                return;
+            }
+            for (ScheduleGenerator.Movie movie : selectedMovies) {
+                if (movie.getPreferredHallId() != null && !hallIds.contains(movie.getPreferredHallId())) {
+                    showAlert("Error", movie.getTitle() + " is set to " + preferredHalls.get(movie.getTitle())
+                            + " only, but that hall is not selected.");
+                    return;
+                }
+            }
+
+            // Plan in memory against what is already scheduled, then insert in one batch
+            ScheduleGenerator.Plan plan;
+            try (UiAction.Scope ignored = UiAction.enter("AdminGUI.generateButton");
+                 Connection conn = dbFacade.connect()) {
+                plan = ScheduleGenerator.plan(selectedMovies, hallIds, sessions, from, to,
+                        ScheduleGenerator.loadExisting(conn, from, to));
+            } catch (SQLException ex) {
+                showAlert("Error", "Failed to create schedule: " + ex.getMessage());
+                return;
+            }
+
+            // No connection is held while the admin reads this
+            StringBuilder summary = new StringBuilder(plan.getEntries().size() + " screening(s) will be created.");
+            for (String warning : plan.getWarnings()) {
+                summary.append("\n").append(warning);
+            }
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, summary.toString());
+            confirm.setTitle("Confirm Schedule");
+            Optional<ButtonType> answer = confirm.showAndWait();
+            if (answer.isEmpty() || answer.get() != ButtonType.OK) {
+                return;
+            }
+
+            // Inserts nothing if another admin took one of the slots meanwhile
+            int created;
+            try (UiAction.Scope ignored = UiAction.enter("AdminGUI.generateButton");
+                 Connection conn = dbFacade.connect()) {
+                created = ScheduleGenerator.write(conn, plan);
+            } catch (SQLException ex) {
+                showAlert("Error", "Failed to create schedule: " + ex.getMessage());
+                return;
+            }
+            showAlert("Success", created + " screening(s) scheduled.");
+            dialog.close();
+        });
+
+        grid.addRow(0, new Label("From:"), fromPicker);
+        grid.addRow(1, new Label("To:"), toPicker);
+        grid.addRow(2, new Label("Movies:"), movieList);
+        grid.addRow(3, new Label("Preferred hall:"), preferenceBox);
+        grid.addRow(4, new Label("Halls:"), hallBoxes);
+        grid.add(generateButton, 1, 5);
+
+        Scene scene = new Scene(grid, 500, 500);
+        dialog.setScene(scene);
+        dialog.show();
+    }
+
+    // Minutes as typed, or -1 if not a positive whole number
+    private static int parseDuration(String text) {
+        try {
+            int minutes = Integer.parseInt(text.trim());
+            return minutes > 0 ? minutes : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Replaces a movie's genres with the comma-separated list; genres live in movie_genres
+    private static void saveGenres(Connection conn, int movieId, String genres) throws SQLException {
+        try (PreparedStatement delete = conn.prepareStatement("DELETE FROM movie_genres WHERE movie_id = ?");
+             PreparedStatement insert = conn.prepareStatement("INSERT IGNORE INTO movie_genres (movie_id, genre) VALUES (?, ?)")) {
+            delete.setInt(1, movieId);
+            delete.executeUpdate();
+            for (String genre : genres.split(",")) {
+                if (!genre.trim().isEmpty()) {
+                    insert.setInt(1, movieId);
+                    insert.setString(2, genre.trim());
+                    insert.addBatch();
+                }
+            }
+            insert.executeBatch();
+        }
     }
 
     private static void showAlert(String title, String content) {
@@ -1,47 +1,179 @@
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AuthenticationManager {
 
-    // Database connection details
-    private static final String URL = "jdbc:mysql://localhost:3306/Group5"; // Replace 'Group5' with your database name
-    private static final String USER = "root"; // Replace with your MySQL username
-    private static final String PASSWORD = "mert1234"; // Replace with your MySQL password
+    // Database connection details; cinema.jdbc.url, .user and .password override them (e.g. for the benchmarks)
+    private static final String URL = System.getProperty("cinema.jdbc.url", "jdbc:mysql://localhost:3306/Group5") // Replace 'Group5' with your database name
+            + "?rewriteBatchedStatements=true" // Send JDBC batches in as few round trips as possible
+            + "&createDatabaseIfNotExist=true" // So MigrationRunner can set up a new server
+            + "&useServerPrepStmts=true&cachePrepStmts=true" // Keep parsed statements per connection, keyed by SQL
+            + "&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048";
+    private static final String USER = System.getProperty("cinema.jdbc.user", "root"); // Replace with your MySQL username
+    private static final String PASSWORD = System.getProperty("cinema.jdbc.password", "mert1234"); // Replace with your MySQL password
+
+    // Shared by every caller of connect(); closing a pooled connection returns it here
+    private static final ConnectionPool POOL = ConnectionPool.fromSystemProperties(URL, USER, PASSWORD);
+
+    private static final Metrics.Histogram LOGIN_TIME = Metrics.histogram("auth.login");
+    private static final Metrics.Counter LOGIN_FAILURES = Metrics.counter("auth.failures");
+
+    static {
+        Metrics.gauge("pool.open", POOL::getOpenConnections);
+        Metrics.gauge("pool.active", POOL::getActiveConnections);
+        Metrics.gauge("pool.waiting", POOL::getThreadsAwaiting);
+        Metrics.gauge("pool.timeouts", POOL::getBorrowTimeouts);
+        Metrics.gauge("pool.leaks", POOL::getLeaksReported);
+    }
+
+    static {
+        POOL.warmUp();
+    }
+
+    // Principals by username, so repeated logins skip the database; see invalidate(). Entries
+    // expire after cinema.auth.cacheTtlMs, in case a change on another terminal is not heard of.
+    private static final long CACHE_TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("cinema.auth.cacheTtlMs", 30_000));
+    private static final Map<String, Credentials> CREDENTIALS = new ConcurrentHashMap<>();
+    // Bumped by every invalidation, so a lookup that raced with one is not cached
+    private static final AtomicLong GENERATION = new AtomicLong();
 
     /**
-     * Authenticates the user by checking the database for matching credentials.
+     * Authenticates the user against the salted password hash in the users table.
+     * Credentials are cached after the first lookup; the password is still hashed on every
+     * attempt and compared in constant time. Legacy plaintext passwords are replaced by a
+     * hash on the first successful login.
      *
      * @param username the entered username
      * @param password the entered password
      * @return the role of the authenticated user, or null if authentication fails
      */
     public static String authenticate(String username, String password) {
-        String query = "SELECT role FROM users WHERE username = ? AND password = ?";
-        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            // Set parameters
-            statement.setString(1, username);
-            statement.setString(2, password);
+        long start = System.nanoTime();
+        String role = check(username, password);
+        LOGIN_TIME.recordSince(start);
+        if (role == null) {
+            LOGIN_FAILURES.increment();
+        }
+        return role;
+    }
 
-            // Execute query
-            ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                // Return the user's role if credentials match
-                return resultSet.getString("role");
+    private static String check(String username, String password) {
+        try {
+            Credentials credentials = CREDENTIALS.get(username);
+            if (credentials != null && System.nanoTime() - credentials.loadedAt > CACHE_TTL_NANOS) {
+                CREDENTIALS.remove(username, credentials);
+                credentials = null;
             }
-
+            if (credentials == null) {
+                long generation = GENERATION.get();
+                credentials = loadCredentials(username);
+                if (credentials == null) {
+                    // Same cost as a real check, so the response time does not reveal unknown usernames
+                    PasswordHasher.verify(password, DummyHash.VALUE);
+                    return null;
+                }
+                if (GENERATION.get() == generation) {
+                    CREDENTIALS.put(username, credentials);
+                }
+            }
+            if (!PasswordHasher.verify(password, credentials.stored)) {
+                return null;
+            }
+            if (PasswordHasher.needsRehash(credentials.stored)) {
+                upgrade(username, password, credentials);
+            }
+            return credentials.role;
         } catch (Exception e) {
             e.printStackTrace();
         }
         return null; // Authentication failed
     }
+
+    /**
+     * Runs {@link #authenticate} off the calling thread, so the FX thread never waits for
+     * hashing or for a database connection.
+     *
+     * @return a future completed with the role, or null if authentication fails
+     */
+    public static CompletableFuture<String> authenticateAsync(String username, String password) {
+        return CompletableFuture.supplyAsync(UiAction.bind(() -> authenticate(username, password)), DataAccessExecutor.executor());
+    }
+
+    /**
+     * Drops the cached credentials of a user. Call after adding, deleting or changing a user;
+     * {@link ChangeFeed} calls it for users changed on other terminals.
+     */
+    public static void invalidate(String username) {
+        GENERATION.incrementAndGet();
+        CREDENTIALS.remove(username);
+    }
+
+    private static Credentials loadCredentials(String username) throws SQLException {
+        String query = "SELECT password, role FROM users WHERE username = ?";
+        try (Connection connection = POOL.borrow();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, username);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next()
+                        ? new Credentials(resultSet.getString("password"), resultSet.getString("role"), System.nanoTime())
+                        : null;
+            }
+        }
+    }
+
+    // Best effort: if the update fails the old value keeps working and is upgraded next time
+    private static void upgrade(String username, String password, Credentials old) {
+        String hashed = PasswordHasher.hash(password);
+        String query = "UPDATE users SET password = ? WHERE username = ? AND password = ?";
+        try (Connection connection = POOL.borrow();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, hashed);
+            statement.setString(2, username);
+            statement.setString(3, old.stored); // Only if nobody changed the password in the meantime
+            if (statement.executeUpdate() > 0) {
+                CREDENTIALS.replace(username, old, new Credentials(hashed, old.role, old.loadedAt));
+            }
+        } catch (SQLException e) {
+            System.err.println("Could not upgrade the password hash of " + username + ": " + e.getMessage());
+        }
+    }
+
+    private static final class Credentials {
+        private final String stored;
+        private final String role;
+        private final long loadedAt; // System.nanoTime() when read from the database
+
+        Credentials(String stored, String role, long loadedAt) {
+            this.stored = stored;
+            this.role = role;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    // Created on first use, so startup does not pay for a hash
+    private static final class DummyHash {
+        static final String VALUE = PasswordHasher.hash("");
+    }
+
     public Connection connect() throws SQLException
     {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        return POOL.borrow();
     }
-    
+
+    /**
+     * Returns the shared connection pool, e.g. to read its metrics.
+     *
+     * @return the pool behind {@link #connect()}
+     */
+    public static ConnectionPool getPool() {
+        return POOL;
+    }
+
 }
@@ -0,0 +1,242 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells this terminal about changes made on any terminal.
+ *
+ * Triggers on tickets, products, config and users append to the change_log table, whose change_id
+ * only grows. One background thread polls it for ids above the last one seen (every
+ * cinema.changeFeed.pollMs, default 1000 ms), brings the shared caches up to date
+ * ({@link SeatAvailability}, {@link PricingSnapshot}, {@link InventoryLedger}, the credentials
+ * in {@link AuthenticationManager}) and then publishes the batch on the
+ * {@link EventBus}. Rows older than a day are pruned now and then.
+ *
+ * A change_id can become visible after a higher one, when its transaction commits later. So the
+ * feed keeps a watermark below which every id has been delivered, re-reads from there, and skips
+ * the ids it already delivered. An id that stays missing for GAP_TIMEOUT_MS after it was first
+ * seen missing is taken to be from a rolled back transaction and is skipped.
+ */
+public class ChangeFeed {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int PRUNE_EVERY_POLLS = 600;
+    private static final long GAP_TIMEOUT_MS = 10_000;
+    private static final ChangeFeed INSTANCE = new ChangeFeed(Long.getLong("cinema.changeFeed.pollMs", 1000));
+
+    private final AuthenticationManager dbFacade = new AuthenticationManager();
+    private final long pollMillis;
+    private ScheduledExecutorService poller;
+    // Only touched by the poller thread
+    private long watermark = -1;                              // Every id up to here is delivered
+    private final TreeSet<Long> deliveredAbove = new TreeSet<>(); // Delivered ids above a gap
+    private final TreeMap<Long, Long> missingSince = new TreeMap<>(); // Ids missing below a delivered one, by when first seen
+    private int polls = 0;
+
+    ChangeFeed(long pollMillis) {
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * Returns the feed shared by every window of this terminal.
+     */
+    public static ChangeFeed getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts polling from {@link #startingPoint} as of the first poll. Does nothing if already running.
+     */
+    public synchronized void start() {
+        start(-1);
+    }
+
+    /**
+     * Starts polling with the changes after the given change_id. Callers that fill a cache first
+     * read the id with {@link #startingPoint} before doing so, so nothing committed while the cache
+     * loads is missed. Does nothing if already running.
+     *
+     * @param after a change_id from {@link #startingPoint}, or -1 to read it on the first poll
+     */
+    public synchronized void start(long after) {
+        if (poller != null) {
+            return;
+        }
+        watermark = after;
+        deliveredAbove.clear();
+        missingSince.clear();
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "change-feed");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(this::poll, 0, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops polling.
+     */
+    public synchronized void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    private void poll() {
+        try (Connection conn = dbFacade.connect()) {
+            if (watermark < 0) {
+                watermark = startingPoint(conn);
+            }
+            long after = watermark;
+            List<EventBus.Event> read;
+            do {
+                read = readAfter(conn, after);
+                if (read.isEmpty()) {
+                    break;
+                }
+                after = read.get(read.size() - 1).getChangeId();
+                List<EventBus.Event> fresh = new ArrayList<>();
+                for (EventBus.Event event : read) {
+                    if (!deliveredAbove.contains(event.getChangeId())) {
+                        fresh.add(event);
+                    }
+                }
+                if (!fresh.isEmpty()) {
+                    applyToCaches(conn, fresh);
+                    EventBus.getInstance().publish(fresh);
+                }
+                // Only now: if applying failed, the batch is read and applied again next time
+                for (EventBus.Event event : fresh) {
+                    deliveredAbove.add(event.getChangeId());
+                }
+            } while (read.size() == BATCH_SIZE);
+            advanceWatermark();
+
+            if (++polls % PRUNE_EVERY_POLLS == 0) {
+                prune(conn);
+            }
+        } catch (SQLException e) {
+            // Try again next time; undelivered ids are still above the watermark
+            System.err.println("Change feed poll failed: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Change feed poll failed: " + e);
+        }
+    }
+
+    private void advanceWatermark() {
+        long now = System.currentTimeMillis();
+        if (!deliveredAbove.isEmpty()) {
+            for (long id = watermark + 1; id < deliveredAbove.last(); id++) {
+                if (!deliveredAbove.contains(id)) {
+                    missingSince.putIfAbsent(id, now);
+                }
+            }
+        }
+        while (!deliveredAbove.isEmpty()) {
+            long next = watermark + 1;
+            if (deliveredAbove.remove(next)) {
+                watermark = next;
+                continue;
+            }
+            Long since = missingSince.get(next);
+            if (since == null || now - since <= GAP_TIMEOUT_MS) {
+                break; // May still commit
+            }
+            watermark = next; // Never committed; stop waiting for it
+        }
+        missingSince.headMap(watermark, true).clear();
+        missingSince.keySet().removeAll(deliveredAbove);
+    }
+
+    /**
+     * Returns the change_id a feed should start after: the newest one older than GAP_TIMEOUT_MS.
+     * Younger ids may still have lower ones from uncommitted transactions below them; those are
+     * read again as ordinary gaps, and applying a change the caches already have is harmless.
+     *
+     * @param conn an open database connection
+     * @return the change_id to pass to {@link #start(long)}
+     * @throws SQLException if the change log cannot be read
+     */
+    public static long startingPoint(Connection conn) throws SQLException {
+        String query = "SELECT change_id FROM change_log WHERE changed_at < NOW(3) - INTERVAL ? SECOND "
+                + "ORDER BY changed_at DESC LIMIT 1";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setLong(1, TimeUnit.MILLISECONDS.toSeconds(GAP_TIMEOUT_MS));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private static List<EventBus.Event> readAfter(Connection conn, long changeId) throws SQLException {
+        List<EventBus.Event> events = new ArrayList<>();
+        String query = "SELECT change_id, kind, entity_id, detail FROM change_log WHERE change_id > ? ORDER BY change_id LIMIT ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setLong(1, changeId);
+            stmt.setInt(2, BATCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    events.add(new EventBus.Event(
+                            rs.getLong("change_id"),
+                            EventBus.Kind.valueOf(rs.getString("kind").toUpperCase(Locale.ROOT)),
+                            rs.getInt("entity_id"),
+                            rs.getString("detail")));
+                }
+            }
+        }
+        return events;
+    }
+
+    // Before publishing, so subscribers that read the caches already see the change
+    private static void applyToCaches(Connection conn, List<EventBus.Event> events) throws SQLException {
+        SeatAvailability seats = SeatAvailability.getInstance();
+        boolean pricesChanged = false;
+        Set<Integer> products = new HashSet<>();
+        for (EventBus.Event event : events) {
+            switch (event.getKind()) {
+                case SEAT_SOLD:
+                    seats.markSold(event.getEntityId(), event.getDetail()); // Our own sales are already marked
+                    break;
+                case SEAT_RELEASED:
+                    // Also drops a confirmed hold from our own sale, so the seat can be sold here again
+                    SeatReservationService.getInstance().cancelSold(event.getEntityId(), event.getDetail());
+                    break;
+                case STOCK:
+                    products.add(event.getEntityId());
+                    break;
+                case PRICE:
+                    pricesChanged = true;
+                    break;
+                case USER:
+                    AuthenticationManager.invalidate(event.getDetail()); // Changed or removed elsewhere
+                    break;
+            }
+        }
+        if (!products.isEmpty()) {
+            InventoryLedger.getInstance().refresh(conn, products);
+        }
+        if (pricesChanged) {
+            PricingSnapshot.reload(conn);
+        }
+    }
+
+    // Every terminal runs this now and then; the LIMIT keeps each delete short
+    private static void prune(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM change_log WHERE changed_at < NOW() - INTERVAL 1 DAY LIMIT 10000");
+        }
+    }
+}
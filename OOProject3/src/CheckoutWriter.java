@@ -0,0 +1,220 @@
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Writes a whole cart as one sale in a single transaction.
+ *
+ * Round trips per checkout: one sales insert (returning the generated sale_id), one batched
+ * tickets insert, one batched sale_items insert, the two revenue rollup updates and the commit,
+ * regardless of how many tickets and products are in the cart. Product stock is taken from
+ * {@link InventoryLedger} before the transaction and written behind by it, so concession sales
+ * do not hold product row locks.
+ *
+ * Sales made while the database was unreachable are written later by {@link SalesJournal}
+ * through {@link #writeJournaledSale}.
+ */
+public class CheckoutWriter {
+
+    private static final String INSERT_SALE =
+            "INSERT INTO sales (customer_id, cashier_id, total_amount, tax_amount, sale_date, ticket_tax_rate, product_tax_rate) "
+                    + "VALUES (?, ?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP), ?, ?)";
+
+    // Inserts nothing if a live ticket already exists for the seat, so another terminal's sale wins cleanly
+    private static final String INSERT_TICKET =
+            "INSERT INTO tickets (sale_id, schedule_id, seat_number, base_price, discount_applied) "
+                    + "SELECT ?, ?, ?, ?, ? FROM DUAL WHERE NOT EXISTS "
+                    + "(SELECT 1 FROM tickets WHERE schedule_id = ? AND seat_number = ? AND is_cancelled = FALSE)";
+
+    private static final String INSERT_SALE_ITEM =
+            "INSERT INTO sale_items (sale_id, product_id, quantity, unit_price) VALUES (?, ?, ?, ?)";
+
+    // The goods of a journaled sale are already handed over, so stock is taken even if it goes negative
+    private static final String TAKE_STOCK =
+            "UPDATE products SET stock_quantity = stock_quantity - ? WHERE product_id = ?";
+
+    private static final Metrics.Histogram CHECKOUT_TIME = Metrics.histogram("db.checkout");
+    private static final Metrics.Counter SEAT_CONFLICTS = Metrics.counter("checkout.seatConflicts");
+    private static final Metrics.Counter CHECKOUT_FAILURES = Metrics.counter("checkout.failures");
+
+    private CheckoutWriter() {
+    }
+
+    /**
+     * Thrown when a seat in the cart was sold by another terminal first.
+     */
+    public static class SeatConflictException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        private final int scheduleId;
+        private final String seatNumber;
+
+        public SeatConflictException(int scheduleId, String seatNumber) {
+            super("Seat " + seatNumber + " has already been sold for schedule " + scheduleId);
+            this.scheduleId = scheduleId;
+            this.seatNumber = seatNumber;
+        }
+
+        public int getScheduleId() { return scheduleId; }
+        public String getSeatNumber() { return seatNumber; }
+    }
+
+    /**
+     * Writes the sale, its tickets and products, and takes the stock, all or nothing.
+     *
+     * @param conn an open connection; its auto-commit mode is restored afterwards
+     * @param cashierId users.user_id of the cashier
+     * @param customerId customers.customer_id, or null for an anonymous sale
+     * @param cart the tickets and products being sold
+     * @param pricing the tax rates to charge
+     * @return the generated sale_id
+     * @throws SeatConflictException if a seat was sold elsewhere in the meantime
+     * @throws SQLException if a product is out of stock or anything else fails; nothing is written
+     *         and no stock is taken in that case
+     */
+    public static int writeSale(Connection conn, int cashierId, Integer customerId, ShoppingCart cart,
+                                PricingSnapshot pricing) throws SQLException {
+        long start = System.nanoTime();
+        BigDecimal ticketTax = cart.getTicketTax(pricing.getTicketTaxRate());
+        BigDecimal productTax = cart.getProductTax(pricing.getProductTaxRate());
+        BigDecimal taxAmount = ticketTax.add(productTax);
+        BigDecimal totalAmount = cart.getTicketSubtotal().add(cart.getProductSubtotal()).add(taxAmount);
+
+        InventoryLedger inventory = InventoryLedger.getInstance();
+        inventory.reserve(conn, cart.getProducts()); // Fails before anything is written
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false); // Start a transaction
+        try {
+            int saleId = insertSale(conn, cashierId, customerId, totalAmount, taxAmount, null,
+                    pricing.getTicketTaxRate(), pricing.getProductTaxRate());
+            insertTickets(conn, saleId, cart.getTickets());
+            insertSaleItems(conn, saleId, cart.getProducts());
+            RevenueRollup.record(conn, totalAmount, ticketTax, productTax);
+            conn.commit();
+            CHECKOUT_TIME.recordSince(start);
+            return saleId;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback(); // Nothing from this cart is kept
+            inventory.release(cart.getProducts());
+            if (e instanceof SeatConflictException) {
+                SEAT_CONFLICTS.increment();
+            } else {
+                CHECKOUT_FAILURES.increment();
+            }
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Writes a sale that was made earlier without the database, on the caller's transaction: the
+     * sale keeps its original time and tax rates and goes into that day's revenue buckets.
+     *
+     * @param conn a connection with a transaction open; nothing is committed or rolled back here
+     * @param ticketTaxRate the ticket tax rate charged at the time, in percent
+     * @param productTaxRate the product tax rate charged at the time, in percent
+     * @param soldAt when the sale was made
+     * @return the generated sale_id
+     * @throws SeatConflictException if a seat was sold elsewhere in the meantime
+     */
+    public static int writeJournaledSale(Connection conn, int cashierId, Integer customerId, ShoppingCart cart,
+                                         BigDecimal ticketTaxRate, BigDecimal productTaxRate,
+                                         LocalDateTime soldAt) throws SQLException {
+        BigDecimal ticketTax = cart.getTicketTax(ticketTaxRate);
+        BigDecimal productTax = cart.getProductTax(productTaxRate);
+        BigDecimal taxAmount = ticketTax.add(productTax);
+        BigDecimal totalAmount = cart.getTicketSubtotal().add(cart.getProductSubtotal()).add(taxAmount);
+
+        int saleId = insertSale(conn, cashierId, customerId, totalAmount, taxAmount, Timestamp.valueOf(soldAt),
+                ticketTaxRate, productTaxRate);
+        insertTickets(conn, saleId, cart.getTickets());
+        insertSaleItems(conn, saleId, cart.getProducts());
+        if (!cart.getProducts().isEmpty()) {
+            try (PreparedStatement stmt = conn.prepareStatement(TAKE_STOCK)) {
+                for (ShoppingCart.ProductLine product : cart.getProducts()) {
+                    stmt.setInt(1, product.getQuantity());
+                    stmt.setInt(2, product.getProductId());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+        RevenueRollup.record(conn, soldAt.toLocalDate(), totalAmount, ticketTax, productTax);
+        return saleId;
+    }
+
+    private static int insertSale(Connection conn, int cashierId, Integer customerId, BigDecimal totalAmount,
+                                  BigDecimal taxAmount, Timestamp saleDate, BigDecimal ticketTaxRate,
+                                  BigDecimal productTaxRate) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SALE, Statement.RETURN_GENERATED_KEYS)) {
+            if (customerId == null) {
+                stmt.setNull(1, Types.INTEGER);
+            } else {
+                stmt.setInt(1, customerId);
+            }
+            stmt.setInt(2, cashierId);
+            stmt.setBigDecimal(3, totalAmount);
+            stmt.setBigDecimal(4, taxAmount);
+            stmt.setTimestamp(5, saleDate);
+            stmt.setBigDecimal(6, ticketTaxRate); // Kept for receipts rendered later
+            stmt.setBigDecimal(7, productTaxRate);
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new SQLException("Sale insert returned no generated key");
+                }
+                return keys.getInt(1);
+            }
+        }
+    }
+
+    private static void insertTickets(Connection conn, int saleId, List<ShoppingCart.TicketLine> tickets) throws SQLException {
+        if (tickets.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_TICKET)) {
+            for (ShoppingCart.TicketLine ticket : tickets) {
+                stmt.setInt(1, saleId);
+                stmt.setInt(2, ticket.getScheduleId());
+                stmt.setString(3, ticket.getSeatNumber());
+                stmt.setBigDecimal(4, ticket.getBasePrice());
+                stmt.setBigDecimal(5, ticket.getDiscountRate());
+                stmt.setInt(6, ticket.getScheduleId());
+                stmt.setString(7, ticket.getSeatNumber());
+                stmt.addBatch();
+            }
+            int[] counts = stmt.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    ShoppingCart.TicketLine ticket = tickets.get(i);
+                    throw new SeatConflictException(ticket.getScheduleId(), ticket.getSeatNumber());
+                }
+            }
+        }
+    }
+
+    private static void insertSaleItems(Connection conn, int saleId, List<ShoppingCart.ProductLine> products) throws SQLException {
+        if (products.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SALE_ITEM)) {
+            for (ShoppingCart.ProductLine product : products) {
+                stmt.setInt(1, saleId);
+                stmt.setInt(2, product.getProductId());
+                stmt.setInt(3, product.getQuantity());
+                stmt.setBigDecimal(4, product.getUnitPrice());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,583 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small bounded JDBC connection pool.
+ *
+ * Connections handed out by {@link #borrow()} are proxies: calling close() on them
+ * returns the physical connection to the pool instead of closing the socket, so
+ * existing try-with-resources code keeps working unchanged.
+ *
+ * Statements and result sets are proxied too. Statements a borrower leaves open are closed when
+ * the connection comes back, so they never pile up on the long-lived physical connection, and
+ * {@link JdbcLeakDetector} reports any left open too long. Every execution is traced by
+ * {@link QueryTracer} (JFR event, slow-query log). Parsed statements are reused through
+ * the driver's per-connection statement cache (cachePrepStmts in the JDBC URL): closing a
+ * PreparedStatement returns it to that cache.
+ *
+ * Sizes and timeouts are read from system properties (see {@link #fromSystemProperties}).
+ */
+public class ConnectionPool {
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final int validationTimeoutSeconds;
+
+    // Idle physical connections, most recently returned first (LIFO keeps the hot ones warm)
+    private final BlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    // One permit per connection that may be handed out at the same time
+    private final Semaphore permits;
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private final JdbcLeakDetector leakDetector;
+    private volatile boolean shutdown = false;
+
+    // Metrics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong totalBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong statementsClosedOnReturn = new AtomicLong();
+    private static final Metrics.Histogram BORROW_WAIT = Metrics.histogram("pool.borrow");
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long idleTimeoutMillis, long borrowTimeoutMillis,
+                          long validationIntervalMillis, int validationTimeoutSeconds, long leakThresholdMillis) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.permits = new Semaphore(maxSize, true);
+        this.leakDetector = new JdbcLeakDetector(leakThresholdMillis);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a pool configured from system properties, falling back to sensible defaults:
+     * cinema.pool.minSize (2), cinema.pool.maxSize (10), cinema.pool.idleTimeoutMs (300000),
+     * cinema.pool.borrowTimeoutMs (5000), cinema.pool.validationIntervalMs (30000),
+     * cinema.pool.validationTimeoutSec (2), cinema.jdbc.leakThresholdMs (0, leak detection off;
+     * it captures a stack trace per statement, so turn it on only while hunting a leak).
+     */
+    public static ConnectionPool fromSystemProperties(String url, String user, String password) {
+        return new ConnectionPool(url, user, password,
+                Integer.getInteger("cinema.pool.minSize", 2),
+                Integer.getInteger("cinema.pool.maxSize", 10),
+                Long.getLong("cinema.pool.idleTimeoutMs", 300_000L),
+                Long.getLong("cinema.pool.borrowTimeoutMs", 5_000L),
+                Long.getLong("cinema.pool.validationIntervalMs", 30_000L),
+                Integer.getInteger("cinema.pool.validationTimeoutSec", 2),
+                Long.getLong("cinema.jdbc.leakThresholdMs", 0L));
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if the pool is below its maximum.
+     * Waits at most the configured borrow timeout when every connection is in use.
+     *
+     * @return a pooled connection; close it to give it back
+     * @throws SQLException if the pool is exhausted or a connection cannot be opened
+     */
+    public Connection borrow() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                borrowTimeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a database connection (pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledEntry entry;
+            while ((entry = idle.pollFirst()) != null) {
+                if (isUsable(entry)) {
+                    return wrap(entry);
+                }
+                discard(entry);
+            }
+            return wrap(open());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Checks an idle connection before handing it out; cheap if it was used recently
+    private boolean isUsable(PooledEntry entry) {
+        try {
+            if (entry.connection.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - entry.lastUsed < validationIntervalMillis) {
+                return true;
+            }
+            if (entry.connection.isValid(validationTimeoutSeconds)) {
+                return true;
+            }
+        } catch (SQLException ignored) {
+            // Treated as a failed validation below
+        }
+        validationFailures.incrementAndGet();
+        return false;
+    }
+
+    private PooledEntry open() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        openConnections.incrementAndGet();
+        createdCount.incrementAndGet();
+        return new PooledEntry(physical);
+    }
+
+    private Connection wrap(PooledEntry entry) {
+        borrowCount.incrementAndGet();
+        PooledConnectionHandler handler = new PooledConnectionHandler(entry);
+        handler.proxy = (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                handler);
+        return handler.proxy;
+    }
+
+    // Called when a borrower closes its proxy
+    private void release(PooledEntry entry, boolean broken) {
+        try {
+            if (broken || shutdown || !reset(entry.connection)) {
+                discard(entry);
+            } else {
+                entry.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(entry);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Puts the connection back into the state a fresh borrower expects
+    private boolean reset(Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback(); // Discard anything the borrower left uncommitted
+                connection.setAutoCommit(true);
+            }
+            if (connection.isReadOnly()) {
+                connection.setReadOnly(false);
+            }
+            connection.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledEntry entry) {
+        openConnections.decrementAndGet();
+        try {
+            entry.connection.close();
+        } catch (SQLException ignored) {
+            // Already broken, nothing else to do
+        }
+    }
+
+    // Closes connections idle for longer than the idle timeout, keeping at least minSize open
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (PooledEntry entry : idle) {
+            if (openConnections.get() <= minSize) {
+                break;
+            }
+            if (now - entry.lastUsed > idleTimeoutMillis && idle.remove(entry)) {
+                evictedCount.incrementAndGet();
+                discard(entry);
+            }
+        }
+        fillToMinimum();
+    }
+
+    // Opens connections in the background until minSize is reached
+    private void fillToMinimum() {
+        while (!shutdown && openConnections.get() < minSize) {
+            try {
+                PooledEntry entry = open();
+                idle.offerLast(entry);
+            } catch (SQLException e) {
+                return; // Database unreachable; try again on the next eviction run
+            }
+        }
+    }
+
+    /**
+     * Opens the minimum number of connections up front so the first user action is fast.
+     */
+    public void warmUp() {
+        evictor.execute(this::fillToMinimum);
+    }
+
+    /**
+     * Closes all idle connections and rejects further borrows.
+     */
+    public void shutdown() {
+        shutdown = true;
+        evictor.shutdownNow();
+        leakDetector.shutdown();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            discard(entry);
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalBorrowWaitNanos.addAndGet(nanos);
+        maxBorrowWaitNanos.accumulateAndGet(nanos, Math::max);
+        BORROW_WAIT.record(nanos);
+    }
+
+    // Metrics accessors
+
+    public int getOpenConnections() { return openConnections.get(); }
+    public int getIdleConnections() { return idle.size(); }
+    public int getActiveConnections() { return maxSize - permits.availablePermits(); }
+    public int getThreadsAwaiting() { return permits.getQueueLength(); }
+    public long getBorrowCount() { return borrowCount.get(); }
+    public long getBorrowTimeouts() { return borrowTimeouts.get(); }
+    public long getCreatedCount() { return createdCount.get(); }
+    public long getEvictedCount() { return evictedCount.get(); }
+    public long getValidationFailures() { return validationFailures.get(); }
+    public long getStatementsClosedOnReturn() { return statementsClosedOnReturn.get(); }
+    public long getLeaksReported() { return leakDetector.getLeaksReported(); }
+
+    public double getAverageBorrowWaitMillis() {
+        long count = borrowCount.get();
+        return count == 0 ? 0.0 : totalBorrowWaitNanos.get() / 1_000_000.0 / count;
+    }
+
+    public double getMaxBorrowWaitMillis() {
+        return maxBorrowWaitNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool[open=%d, idle=%d, active=%d, waiting=%d, borrows=%d, timeouts=%d, avgWait=%.2fms, maxWait=%.2fms, leaks=%d]",
+                getOpenConnections(), getIdleConnections(), getActiveConnections(), getThreadsAwaiting(),
+                getBorrowCount(), getBorrowTimeouts(), getAverageBorrowWaitMillis(), getMaxBorrowWaitMillis(),
+                getLeaksReported());
+    }
+
+    // A physical connection plus the time it was last returned
+    private static class PooledEntry {
+        private final Connection connection;
+        private volatile long lastUsed;
+
+        PooledEntry(Connection connection) {
+            this.connection = connection;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    // Forwards everything to the physical connection except close()/isClosed(); wraps the statements it creates
+    private class PooledConnectionHandler implements InvocationHandler {
+        private final PooledEntry entry;
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        private final Set<Statement> openStatements = ConcurrentHashMap.newKeySet();
+        private Connection proxy;
+        private boolean broken = false;
+
+        PooledConnectionHandler(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (closed.compareAndSet(false, true)) {
+                        closeOpenStatements();
+                        release(entry, broken);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed.get() || entry.connection.isClosed();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.connection + "]";
+                default:
+                    break;
+            }
+            if (closed.get()) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            Object result = forward(entry.connection, method, args);
+            if (result instanceof Statement && method.getReturnType().isInterface()) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return wrapStatement((Statement) result, method.getReturnType(), sql);
+            }
+            return result;
+        }
+
+        // Calls the physical object, noting errors that mean the connection itself is gone
+        Object forward(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                // SQLState class 08 means the connection itself is gone; don't recycle it
+                if (cause instanceof SQLException) {
+                    String state = ((SQLException) cause).getSQLState();
+                    if (state != null && state.startsWith("08")) {
+                        broken = true;
+                    }
+                }
+                throw cause;
+            }
+        }
+
+        private Statement wrapStatement(Statement statement, Class<?> type, String sql) {
+            StatementHandler handler = new StatementHandler(this, statement, sql);
+            handler.proxy = (Statement) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(), new Class<?>[]{type}, handler);
+            openStatements.add(handler.proxy);
+            leakDetector.opened(handler.proxy, type.getSimpleName() + (sql == null ? "" : " " + sql));
+            return handler.proxy;
+        }
+
+        // What the borrower forgot; closing a cached PreparedStatement hands it back to the driver's cache
+        private void closeOpenStatements() {
+            for (Statement statement : openStatements) {
+                statementsClosedOnReturn.incrementAndGet();
+                leakDetector.reportNow(statement, "not closed before its connection was returned");
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                    // The connection is reset or discarded next anyway
+                }
+            }
+        }
+    }
+
+    // Tracks a statement and the result sets it returns, and traces each execution (QueryTracer);
+    // getConnection() gives back the pooled proxy
+    private class StatementHandler implements InvocationHandler {
+        private final PooledConnectionHandler owner;
+        private final Statement statement;
+        private final String sql;
+        private final Set<ResultSetHandler> openResults = ConcurrentHashMap.newKeySet();
+        private Statement proxy;
+        private int binds;        // Bind values set since the last execution
+        private int batched;      // addBatch() calls since the last execution
+        private String batchSql;  // First SQL passed to Statement.addBatch(String)
+
+        StatementHandler(PooledConnectionHandler owner, Statement statement, String sql) {
+            this.owner = owner;
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    for (ResultSetHandler rs : openResults) {
+                        rs.untrack(); // Closed along with the statement
+                    }
+                    owner.openStatements.remove(proxy);
+                    leakDetector.closed(proxy);
+                    statement.close();
+                    return null;
+                case "getConnection":
+                    return owner.proxy;
+                case "addBatch":
+                    batched++;
+                    if (batchSql == null && args != null && args.length == 1) {
+                        batchSql = (String) args[0];
+                    }
+                    break;
+                case "clearParameters":
+                    binds = 0;
+                    break;
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledStatement[" + statement + "]";
+                default:
+                    if (name.startsWith("set") && args != null && args.length >= 2) {
+                        binds++; // setInt(1, ...), setString("name", ...) and so on
+                    } else if (name.startsWith("execute")) {
+                        return execute(method, args);
+                    }
+                    break;
+            }
+            return wrapResult(owner.forward(statement, method, args), null);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String text = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            if (method.getName().endsWith("Batch")) {
+                text = (text != null ? text : batchSql) + " [batch of " + batched + "]";
+                batched = 0;
+                batchSql = null;
+            }
+            QueryTracer.Execution execution = QueryTracer.start(text, binds);
+            binds = 0;
+            Object result;
+            try {
+                result = owner.forward(statement, method, args);
+            } catch (Throwable t) {
+                execution.finish();
+                throw t;
+            }
+            if (result instanceof ResultSet) {
+                return wrapResult(result, execution); // Finished when the rows have been read
+            }
+            if (result instanceof Number) {
+                execution.addRows(((Number) result).longValue());
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    execution.addRows(Math.max(count, 0));
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    execution.addRows(Math.max(count, 0));
+                }
+            } else if (Boolean.FALSE.equals(result)) {
+                execution.addRows(statement.getUpdateCount());
+            }
+            execution.finish();
+            return result;
+        }
+
+        private Object wrapResult(Object result, QueryTracer.Execution execution) {
+            if (!(result instanceof ResultSet)) {
+                return result;
+            }
+            ResultSetHandler handler = new ResultSetHandler(this, (ResultSet) result, execution);
+            handler.proxy = (ResultSet) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, handler);
+            openResults.add(handler);
+            leakDetector.opened(handler.proxy, "ResultSet of " + (sql == null ? "a Statement" : sql));
+            return handler.proxy;
+        }
+    }
+
+    // Counts rows for the execution's trace and untracks the result set on close();
+    // getStatement() gives back the statement proxy
+    private class ResultSetHandler implements InvocationHandler {
+        private final StatementHandler owner;
+        private final ResultSet resultSet;
+        private final QueryTracer.Execution execution; // Null for generated keys and the like
+        private ResultSet proxy;
+        private long rows;
+
+        ResultSetHandler(StatementHandler owner, ResultSet resultSet, QueryTracer.Execution execution) {
+            this.owner = owner;
+            this.resultSet = resultSet;
+            this.execution = execution;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    Object hasRow = owner.owner.forward(resultSet, method, args);
+                    if (Boolean.TRUE.equals(hasRow)) {
+                        rows++;
+                    }
+                    return hasRow;
+                case "close":
+                    untrack();
+                    resultSet.close();
+                    return null;
+                case "getStatement":
+                    return owner.proxy;
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            return owner.owner.forward(resultSet, method, args);
+        }
+
+        void untrack() {
+            owner.openResults.remove(this);
+            leakDetector.closed(proxy);
+            if (execution != null) {
+                execution.addRows(rows);
+                execution.finish();
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs database work off the JavaFX Application Thread.
+ *
+ * Each task borrows a pooled connection, runs, and completes a CompletableFuture.
+ * GUI code applies the result on the FX thread with Platform.runLater.
+ * Uses virtual threads when the JDK provides them, otherwise a small daemon thread pool.
+ * The time from submit until a connection is in hand is recorded as db.executor.wait; work
+ * submitted with an operation name is also timed as db.&lt;operation&gt; (see {@link Metrics}).
+ * The submitting thread's {@link UiAction} is carried over, so the queries are traced to it.
+ */
+public class DataAccessExecutor {
+
+    /**
+     * A unit of database work that runs with a borrowed connection.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface Query<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    private static final AuthenticationManager dbFacade = new AuthenticationManager();
+    private static final ExecutorService EXECUTOR = createExecutor();
+    private static final Metrics.Histogram WAIT_TIME = Metrics.histogram("db.executor.wait");
+    // db.<operation> histograms by operation, so a submit does not build the metric name again
+    private static final Map<String, Metrics.Histogram> RUN_TIMES = new ConcurrentHashMap<>();
+
+    // Most recent future per refresh key; older ones are cancelled when superseded
+    private static final Map<Object, CompletableFuture<?>> latest = new ConcurrentHashMap<>();
+
+    private DataAccessExecutor() {
+    }
+
+    /**
+     * Runs the query on the data-access executor.
+     *
+     * @param query the work to run with a pooled connection
+     * @return a future completed with the query result, or exceptionally with its error
+     */
+    public static <T> CompletableFuture<T> submit(Query<T> query) {
+        return submit(null, query);
+    }
+
+    /**
+     * Runs the query on the data-access executor and times it as db.&lt;operation&gt;.
+     *
+     * @param operation dotted metric name, e.g. "inventory.refresh"; null to only record the wait
+     * @param query the work to run with a pooled connection
+     * @return a future completed with the query result, or exceptionally with its error
+     */
+    @SuppressWarnings("try")
+    public static <T> CompletableFuture<T> submit(String operation, Query<T> query) {
+        Metrics.Histogram runTime = operation == null ? null
+                : RUN_TIMES.computeIfAbsent(operation, o -> Metrics.histogram("db." + o));
+        String action = UiAction.current();
+        long submitted = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = EXECUTOR.submit(() -> {
+            if (result.isDone()) {
+                return; // Cancelled before it started
+            }
+            try (UiAction.Scope ignored = UiAction.enter(action);
+                 Connection conn = dbFacade.connect()) {
+                long start = System.nanoTime();
+                WAIT_TIME.record(start - submitted);
+                T value = query.run(conn);
+                if (runTime != null) {
+                    runTime.recordSince(start);
+                }
+                result.complete(value);
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        // Cancelling the future interrupts a task that is still waiting for a connection
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs the query and cancels any earlier, still-running query submitted with the same key.
+     * Use one key per view (e.g. the TableView being refreshed) so only the newest refresh wins.
+     *
+     * @param key identifies the view or data set being refreshed
+     * @param query the work to run with a pooled connection
+     * @return a future completed with the query result
+     */
+    public static <T> CompletableFuture<T> submitLatest(Object key, Query<T> query) {
+        return submitLatest(key, null, query);
+    }
+
+    /**
+     * Like {@link #submitLatest(Object, Query)}, timed as db.&lt;operation&gt;.
+     */
+    public static <T> CompletableFuture<T> submitLatest(Object key, String operation, Query<T> query) {
+        return adoptLatest(key, submit(operation, query));
+    }
+
+    /**
+     * Makes an already submitted future the newest one for the key, as if it had been submitted
+     * with {@link #submitLatest}, e.g. a read started ahead of the view that shows it.
+     *
+     * @param key identifies the view or data set being refreshed
+     * @param future a future returned by {@link #submit}
+     * @return the same future
+     */
+    public static <T> CompletableFuture<T> adoptLatest(Object key, CompletableFuture<T> future) {
+        CompletableFuture<?> previous = latest.put(key, future);
+        if (previous != null && previous != future) {
+            previous.cancel(true);
+        }
+        future.whenComplete((value, error) -> latest.remove(key, future));
+        return future;
+    }
+
+    /**
+     * Checks whether a future is still the newest one for its key, i.e. its result is not stale.
+     *
+     * @param key the key passed to {@link #submitLatest}
+     * @param future the future returned by {@link #submitLatest}
+     * @return true if no newer query has been submitted for the key
+     */
+    public static boolean isCurrent(Object key, CompletableFuture<?> future) {
+        if (future.isCancelled()) {
+            return false;
+        }
+        CompletableFuture<?> current = latest.get(key);
+        return current == null || current == future;
+    }
+
+    /**
+     * Returns the executor itself, for work that should share the data-access threads.
+     */
+    public static ExecutorService executor() {
+        return EXECUTOR;
+    }
+
+    // Prefers Executors.newVirtualThreadPerTaskExecutor() (JDK 21+) without requiring it at compile time
+    private static ExecutorService createExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            int threads = Integer.getInteger("cinema.db.threads", 4);
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "data-access-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
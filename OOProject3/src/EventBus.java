@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process publish/subscribe for data changes, so open views can update the rows that
+ * changed instead of re-querying everything.
+ *
+ * Events are delivered synchronously on the publishing thread (usually the {@link ChangeFeed}
+ * poller); subscribers that touch the GUI must hand over with Platform.runLater.
+ */
+public class EventBus {
+
+    /**
+     * What changed. Names match change_log.kind.
+     */
+    public enum Kind {
+        SEAT_SOLD, SEAT_RELEASED, STOCK, PRICE, USER
+    }
+
+    /**
+     * One change: a sold or released seat, a changed product, a changed config value, or a changed user.
+     */
+    public static class Event {
+        private final long changeId;
+        private final Kind kind;
+        private final int entityId;
+        private final String detail;
+
+        /**
+         * @param changeId change_log.change_id
+         * @param kind what changed
+         * @param entityId schedule_id for seats, product_id for stock, 0 for prices, user_id for users
+         * @param detail seat number for seats, config key for prices, username for users, otherwise null
+         */
+        public Event(long changeId, Kind kind, int entityId, String detail) {
+            this.changeId = changeId;
+            this.kind = kind;
+            this.entityId = entityId;
+            this.detail = detail;
+        }
+
+        public long getChangeId() { return changeId; }
+        public Kind getKind() { return kind; }
+        public int getEntityId() { return entityId; }
+        public String getDetail() { return detail; }
+
+        @Override
+        public String toString() {
+            return kind + "(" + entityId + (detail == null ? "" : ", " + detail) + ")";
+        }
+    }
+
+    /**
+     * Returned by {@link #subscribe}; closing it stops delivery.
+     */
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final EventBus INSTANCE = new EventBus();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Returns the bus shared by the whole application.
+     */
+    public static EventBus getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Delivers events of the given kinds to the consumer until the subscription is closed.
+     *
+     * @param consumer called on the publishing thread with the matching events of each batch, in order
+     * @param kinds the kinds to receive
+     * @return closes the subscription
+     */
+    public Subscription subscribe(Consumer<List<Event>> consumer, Kind... kinds) {
+        Listener listener = new Listener(consumer, kinds);
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    /**
+     * Delivers a batch of events, making one call per subscriber with the events it asked for.
+     * A failing subscriber is reported and does not stop delivery to the others.
+     */
+    public void publish(List<Event> events) {
+        for (Listener listener : listeners) {
+            List<Event> matching = new ArrayList<>();
+            for (Event event : events) {
+                if (listener.accepts(event.getKind())) {
+                    matching.add(event);
+                }
+            }
+            if (matching.isEmpty()) {
+                continue;
+            }
+            try {
+                listener.consumer.accept(matching);
+            } catch (RuntimeException e) {
+                System.err.println("Event subscriber failed on " + matching + ": " + e);
+            }
+        }
+    }
+
+    private static class Listener {
+        private final Consumer<List<Event>> consumer;
+        private final Kind[] kinds;
+
+        Listener(Consumer<List<Event>> consumer, Kind[] kinds) {
+            this.consumer = consumer;
+            this.kinds = kinds.clone();
+        }
+
+        boolean accepts(Kind kind) {
+            for (Kind k : kinds) {
+                if (k == kind) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
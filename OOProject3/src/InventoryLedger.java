@@ -0,0 +1,248 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Product stock as relative, concurrency-safe operations: take n if at least n are left, or add n.
+ *
+ * Each product has its own counter: the stock last read from or written to the database, plus
+ * the local change not yet written. Taking stock is a compare-and-set on that product's counter
+ * only, so concurrent sales of different products never wait on each other and no sale waits
+ * on a row lock. A background thread writes the local changes behind, every
+ * cinema.inventory.flushMs (default 250 ms), as one batch of relative updates
+ * (stock_quantity = stock_quantity + delta) in one transaction, so a concurrent restock on another
+ * terminal is never overwritten.
+ *
+ * Other terminals' changes arrive through {@link ChangeFeed}, which calls {@link #refresh}. Until
+ * then a terminal may accept a sale against stock another terminal has just sold; the database
+ * value then goes negative instead of being silently overwritten. Changes not yet flushed when
+ * the process dies are lost, so {@link #shutdown} flushes.
+ */
+public class InventoryLedger {
+
+    private static final String ADD_STOCK = "UPDATE products SET stock_quantity = stock_quantity + ? WHERE product_id = ?";
+
+    private static final InventoryLedger INSTANCE = new InventoryLedger(Long.getLong("cinema.inventory.flushMs", 250));
+
+    private final AuthenticationManager dbFacade = new AuthenticationManager();
+    private final Map<Integer, Counter> counters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final Object flushLock = new Object(); // Keeps flush() and refresh() from interleaving
+
+    InventoryLedger(long flushMillis) {
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inventory-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the ledger shared by the whole application.
+     */
+    public static InventoryLedger getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Takes quantity units of a product if at least that many are available.
+     *
+     * @param conn used to read the product's stock the first time it is seen
+     * @return false if there is not enough stock; nothing is taken then
+     */
+    public boolean tryDecrement(Connection conn, int productId, int quantity) throws SQLException {
+        return counter(conn, productId).tryTake(quantity);
+    }
+
+    /**
+     * Takes every product line of a cart, or none of them.
+     *
+     * @throws SQLException if a product is unknown or out of stock; nothing is taken then
+     */
+    public void reserve(Connection conn, List<ShoppingCart.ProductLine> products) throws SQLException {
+        List<ShoppingCart.ProductLine> taken = new ArrayList<>();
+        for (ShoppingCart.ProductLine product : products) {
+            if (!tryDecrement(conn, product.getProductId(), product.getQuantity())) {
+                release(taken);
+                throw new SQLException("Not enough stock for product " + product.getProductId());
+            }
+            taken.add(product);
+        }
+    }
+
+    /**
+     * Gives back product lines taken by {@link #reserve}, e.g. when the sale failed.
+     */
+    public void release(List<ShoppingCart.ProductLine> products) {
+        for (ShoppingCart.ProductLine product : products) {
+            Counter counter = counters.get(product.getProductId());
+            if (counter != null) {
+                counter.pending.addAndGet(product.getQuantity());
+            }
+        }
+    }
+
+    /**
+     * Adds quantity units to a product's stock.
+     */
+    public void restock(Connection conn, int productId, int quantity) throws SQLException {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Restock quantity must not be negative: " + quantity);
+        }
+        counter(conn, productId).pending.addAndGet(quantity);
+    }
+
+    /**
+     * Returns the stock this terminal considers available, including changes not yet written.
+     */
+    public int getAvailable(Connection conn, int productId) throws SQLException {
+        return counter(conn, productId).available();
+    }
+
+    /**
+     * Writes every pending change now, as one batch in one transaction. Changes that fail to
+     * write stay pending and are retried by the next flush.
+     */
+    public void flush() throws SQLException {
+        synchronized (flushLock) {
+            List<Integer> ids = new ArrayList<>();
+            List<Integer> deltas = new ArrayList<>();
+            counters.forEach((id, counter) -> {
+                int delta = counter.pending.get();
+                if (delta != 0) {
+                    ids.add(id);
+                    deltas.add(delta);
+                }
+            });
+            if (ids.isEmpty()) {
+                return;
+            }
+            try (Connection conn = dbFacade.connect()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement stmt = conn.prepareStatement(ADD_STOCK)) {
+                    for (int i = 0; i < ids.size(); i++) {
+                        stmt.setInt(1, deltas.get(i));
+                        stmt.setInt(2, ids.get(i));
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                Counter counter = counters.get(ids.get(i));
+                if (counter != null) {
+                    // Pending first: for a moment less is available, never more
+                    counter.pending.addAndGet(-deltas.get(i));
+                    counter.stored += deltas.get(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-reads the stored stock of products changed elsewhere. Products not tracked yet are skipped.
+     */
+    public void refresh(Connection conn, Collection<Integer> productIds) throws SQLException {
+        synchronized (flushLock) {
+            for (int productId : productIds) {
+                Counter counter = counters.get(productId);
+                if (counter == null) {
+                    continue;
+                }
+                Integer stored = readStock(conn, productId);
+                if (stored == null) {
+                    counters.remove(productId); // Deleted
+                } else {
+                    counter.stored = stored;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets a product, e.g. after it was deleted. Its pending change is dropped.
+     */
+    public void forget(int productId) {
+        counters.remove(productId);
+    }
+
+    /**
+     * Stops the background writer after a final flush.
+     */
+    public void shutdown() {
+        flusher.shutdown();
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Inventory flush failed, will retry: " + e.getMessage());
+        }
+    }
+
+    private Counter counter(Connection conn, int productId) throws SQLException {
+        Counter counter = counters.get(productId);
+        if (counter != null) {
+            return counter;
+        }
+        Integer stored = readStock(conn, productId);
+        if (stored == null) {
+            throw new SQLException("Unknown product " + productId);
+        }
+        Counter loaded = new Counter(stored);
+        Counter existing = counters.putIfAbsent(productId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private static Integer readStock(Connection conn, int productId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT stock_quantity FROM products WHERE product_id = ?")) {
+            stmt.setInt(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    // Available stock is stored + pending
+    private static class Counter {
+        private volatile int stored;                         // As last read or written; changed under flushLock
+        private final AtomicInteger pending = new AtomicInteger(); // Local change not written yet
+
+        Counter(int stored) {
+            this.stored = stored;
+        }
+
+        int available() {
+            return stored + pending.get();
+        }
+
+        boolean tryTake(int quantity) {
+            while (true) {
+                int current = pending.get();
+                if (stored + current < quantity) {
+                    return false;
+                }
+                if (pending.compareAndSet(current, current - quantity)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports JDBC statements and result sets that stay open longer than a threshold, with the
+ * stack trace of the code that opened them.
+ *
+ * {@link ConnectionPool} registers every statement and result set it hands out and unregisters
+ * it on close(); a daemon thread looks for old ones every half threshold. Each leak is reported
+ * once. A threshold of 0 turns tracking off; every tracked resource costs a stack capture, so
+ * it is meant to be switched on while looking for a leak, not left on in production.
+ */
+public class JdbcLeakDetector {
+
+    private final long thresholdMillis;
+    private final Map<Object, Tracked> open = new ConcurrentHashMap<>();
+    private final AtomicLong leaksReported = new AtomicLong();
+    private final ScheduledExecutorService scanner;
+
+    /**
+     * @param thresholdMillis how long a statement or result set may stay open; 0 disables detection
+     */
+    public JdbcLeakDetector(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+        if (thresholdMillis <= 0) {
+            this.scanner = null;
+            return;
+        }
+        this.scanner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "jdbc-leak-detector");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, thresholdMillis / 2);
+        scanner.scheduleWithFixedDelay(this::scan, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return scanner != null;
+    }
+
+    /**
+     * Starts tracking a resource. The caller's stack is captured here.
+     *
+     * @param description what to print, e.g. the statement's SQL
+     */
+    public void opened(Object resource, String description) {
+        if (isEnabled()) {
+            open.put(resource, new Tracked(description));
+        }
+    }
+
+    /**
+     * Stops tracking a resource.
+     */
+    public void closed(Object resource) {
+        if (isEnabled()) {
+            open.remove(resource);
+        }
+    }
+
+    /**
+     * Reports a resource right away, e.g. a statement still open when its connection was returned.
+     */
+    public void reportNow(Object resource, String reason) {
+        if (!isEnabled()) {
+            return;
+        }
+        Tracked tracked = open.remove(resource);
+        if (tracked != null && !tracked.reported) {
+            report(tracked, reason);
+        }
+    }
+
+    public long getLeaksReported() {
+        return leaksReported.get();
+    }
+
+    /**
+     * Stops the background scan.
+     */
+    public void shutdown() {
+        if (scanner != null) {
+            scanner.shutdownNow();
+        }
+    }
+
+    private void scan() {
+        long now = System.currentTimeMillis();
+        for (Tracked tracked : open.values()) {
+            long age = now - tracked.openedAt;
+            if (!tracked.reported && age > thresholdMillis) {
+                report(tracked, "still open after " + age + " ms");
+            }
+        }
+    }
+
+    private void report(Tracked tracked, String reason) {
+        tracked.reported = true;
+        leaksReported.incrementAndGet();
+        System.err.println("Possible JDBC leak, " + reason + ": " + tracked.description);
+        tracked.origin.printStackTrace();
+    }
+
+    // One open resource and where it was opened
+    private static class Tracked {
+        private final String description;
+        private final long openedAt = System.currentTimeMillis();
+        private final Throwable origin = new Throwable("Opened here");
+        private volatile boolean reported = false;
+
+        Tracked(String description) {
+            this.description = description;
+        }
+    }
+}
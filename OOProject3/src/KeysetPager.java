@@ -0,0 +1,207 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a table one page at a time, sorted and filtered in SQL.
+ *
+ * Pages are found by keyset rather than OFFSET: each page starts after the (sort value, id) of
+ * the previous page's last row, so page n costs the same as page 1 and rows inserted meanwhile
+ * do not shift later pages. The sort column is always paired with the primary key, which makes
+ * the order total; a secondary index on the sort column (InnoDB appends the primary key to it)
+ * serves both the ORDER BY and the cursor condition.
+ *
+ * Instances are immutable; changing the sort or filter returns a new pager.
+ *
+ * @param <T> the row type
+ */
+public final class KeysetPager<T> {
+
+    /**
+     * Maps the current row of a result set.
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Position after the last row of a page. Opaque to callers.
+     */
+    public static final class Cursor {
+        private final Object sortValue;
+        private final int id;
+
+        private Cursor(Object sortValue, int id) {
+            this.sortValue = sortValue;
+            this.id = id;
+        }
+    }
+
+    /**
+     * One page of rows and the cursor to the next page.
+     */
+    public static final class Page<T> {
+        private final List<T> rows;
+        private final Cursor next;
+
+        private Page(List<T> rows, Cursor next) {
+            this.rows = Collections.unmodifiableList(rows);
+            this.next = next;
+        }
+
+        public List<T> getRows() { return rows; }
+        /** The cursor for the following page, or null if this was the last one. */
+        public Cursor getNext() { return next; }
+    }
+
+    private static final String SORT_KEY = "keyset_sort";
+
+    private final String table;
+    private final String columns;
+    private final String idColumn;
+    private final String condition;
+    private final List<Object> conditionParams;
+    private final List<String> filterColumns;
+    private final RowMapper<T> mapper;
+    private final String sortColumn;
+    private final boolean ascending;
+    private final String filter;
+
+    /**
+     * @param table the table to read
+     * @param columns the select list; must include idColumn
+     * @param idColumn the integer primary key
+     * @param condition a fixed WHERE condition with ? placeholders, or null
+     * @param conditionParams values for the condition's placeholders
+     * @param filterColumns columns matched by {@link #withFilter} (prefix match, so indexes apply)
+     * @param mapper maps one row
+     */
+    public KeysetPager(String table, String columns, String idColumn, String condition, List<Object> conditionParams,
+                       List<String> filterColumns, RowMapper<T> mapper) {
+        this(table, columns, idColumn, condition, conditionParams, filterColumns, mapper, idColumn, true, "");
+    }
+
+    private KeysetPager(String table, String columns, String idColumn, String condition, List<Object> conditionParams,
+                        List<String> filterColumns, RowMapper<T> mapper, String sortColumn, boolean ascending, String filter) {
+        this.table = table;
+        this.columns = columns;
+        this.idColumn = idColumn;
+        this.condition = condition;
+        this.conditionParams = conditionParams;
+        this.filterColumns = filterColumns;
+        this.mapper = mapper;
+        this.sortColumn = sortColumn;
+        this.ascending = ascending;
+        this.filter = filter;
+    }
+
+    /**
+     * Returns a pager sorted by the given column, then by id. The cursor compares the same value
+     * the rows are ordered by, so it may also be an expression over the table's columns, e.g.
+     * CAST(role AS CHAR) for an ENUM, which ORDER BY would otherwise sort by position but a
+     * comparison with the cursor's text by name.
+     *
+     * @param column a column of the table or an expression over them, or null to sort by id only;
+     *               never user input
+     */
+    public KeysetPager<T> withSort(String column, boolean ascending) {
+        return new KeysetPager<>(table, columns, idColumn, condition, conditionParams, filterColumns, mapper,
+                column == null ? idColumn : column, ascending, filter);
+    }
+
+    /**
+     * Returns a pager that only reads rows where one of the filter columns starts with the text.
+     *
+     * @param text the filter text; empty for no filter
+     */
+    public KeysetPager<T> withFilter(String text) {
+        return new KeysetPager<>(table, columns, idColumn, condition, conditionParams, filterColumns, mapper,
+                sortColumn, ascending, text == null ? "" : text.trim());
+    }
+
+    public String getSortColumn() { return sortColumn; }
+    public boolean isAscending() { return ascending; }
+    public String getFilter() { return filter; }
+
+    /**
+     * Reads the page after the cursor.
+     *
+     * @param conn an open connection
+     * @param after the previous page's {@link Page#getNext()}, or null for the first page
+     * @param limit the maximum number of rows
+     * @return the rows and the cursor to the page after them
+     */
+    public Page<T> fetch(Connection conn, Cursor after, int limit) throws SQLException {
+        boolean byId = sortColumn.equals(idColumn);
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns);
+        if (!byId) {
+            sql.append(", ").append(sortColumn).append(" AS ").append(SORT_KEY); // The cursor's value, as ordered
+        }
+        sql.append(" FROM ").append(table);
+        List<Object> params = new ArrayList<>();
+        List<String> where = new ArrayList<>();
+        if (condition != null) {
+            where.add(condition);
+            params.addAll(conditionParams);
+        }
+        if (!filter.isEmpty() && !filterColumns.isEmpty()) {
+            List<String> likes = new ArrayList<>();
+            for (String column : filterColumns) {
+                likes.add(column + " LIKE ?");
+                params.add(escapeLike(filter) + "%");
+            }
+            where.add("(" + String.join(" OR ", likes) + ")");
+        }
+        if (after != null) {
+            String op = ascending ? ">" : "<";
+            if (byId) {
+                where.add(idColumn + " " + op + " ?");
+                params.add(after.id);
+            } else {
+                where.add("(" + sortColumn + " " + op + " ? OR (" + sortColumn + " = ? AND " + idColumn + " " + op + " ?))");
+                params.add(after.sortValue);
+                params.add(after.sortValue);
+                params.add(after.id);
+            }
+        }
+        if (!where.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", where));
+        }
+        String direction = ascending ? " ASC" : " DESC";
+        sql.append(" ORDER BY ");
+        if (!byId) {
+            sql.append(sortColumn).append(direction).append(", ");
+        }
+        sql.append(idColumn).append(direction).append(" LIMIT ?");
+        params.add(limit + 1); // One extra row tells whether there is a next page
+
+        List<T> rows = new ArrayList<>();
+        Cursor last = null;
+        boolean more = false;
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (rows.size() == limit) {
+                        more = true;
+                        break;
+                    }
+                    rows.add(mapper.map(rs));
+                    last = new Cursor(byId ? null : rs.getObject(SORT_KEY), rs.getInt(idColumn));
+                }
+            }
+        }
+        return new Page<>(rows, more ? last : null);
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
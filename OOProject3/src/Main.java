@@ -1,7 +1,9 @@
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
@@ -11,10 +13,38 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
 public class Main extends Application {
 
+    // Set by init() if the database cannot be used; shown instead of the login screen
+    private static String startupError;
+
     @Override
+    public void init() {
+        Metrics.startReporting(); // Appends a metrics snapshot to the CSV file every minute
+        // Runs once, before the first window; brings the schema up to date and checks it
+        try (Connection conn = new AuthenticationManager().connect()) {
+            MigrationRunner.migrateAndValidate(conn);
+            SalesArchiver.getInstance().start(); // Moves closed months to the archive tables in the background
+        } catch (SQLException e) {
+            startupError = e.getMessage();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("try")
     public void start(Stage primaryStage) {
+        if (startupError != null) {
+            Alert alert = new Alert(Alert.AlertType.ERROR, startupError);
+            alert.setTitle("Database Error");
+            alert.setHeaderText("The application cannot start");
+            alert.showAndWait();
+            Platform.exit();
+            return;
+        }
         primaryStage.setTitle("Group5 CinemaCenter");
 
         // Create login interface
@@ -48,12 +78,19 @@ public class Main extends Application {
             String username = userTextField.getText();
             String password = pwBox.getText();
 
-            String role = AuthenticationManager.authenticate(username, password);
-            if (role != null) {
-                openMainInterface(primaryStage, username, role);
-            } else {
-                messageLabel.setTextFill(Color.RED);
-                messageLabel.setText("Invalid username or password.");
+            // Hashing and the database lookup run in the background; the button stays disabled meanwhile
+            loginButton.setDisable(true);
+            messageLabel.setText("");
+            try (UiAction.Scope ignored = UiAction.enter("Main.loginButton")) {
+                AuthenticationManager.authenticateAsync(username, password).thenAccept(role -> Platform.runLater(() -> {
+                    loginButton.setDisable(false);
+                    if (role != null) {
+                        openMainInterface(primaryStage, username, role);
+                    } else {
+                        messageLabel.setTextFill(Color.RED);
+                        messageLabel.setText("Invalid username or password.");
+                    }
+                }));
             }
         });
 
@@ -80,6 +117,17 @@ public class Main extends Application {
         }
     }
 
+    @Override
+    public void stop() {
+        // Stop background polling, then close pooled database connections when the application exits
+        ChangeFeed.getInstance().stop();
+        SalesArchiver.getInstance().stop();
+        SalesJournal.getInstance().stop(); // Unwritten offline sales stay in the journal for the next start
+        Metrics.stopReporting();
+        InventoryLedger.getInstance().shutdown(); // Writes stock changes still pending
+        ReceiptPipeline.getInstance().shutdown(5, TimeUnit.SECONDS); // Finishes queued receipts; the rest are backfilled
+        AuthenticationManager.getPool().shutdown();
+    }
 
     public static void main(String[] args) {
         launch(args);
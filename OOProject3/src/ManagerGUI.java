@@ -2,13 +2,29 @@ import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import java.math.BigDecimal;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -17,6 +33,18 @@ public class ManagerGUI {
     private static AuthenticationManager dbFacade = new AuthenticationManager();
     private static String currentUsername;
 
+    private static final String PRODUCT_COLUMNS = "product_id, name, type, stock_quantity, price, updated_at";
+    // Change notifications the open views listen to; closed on logout
+    private static final List<EventBus.Subscription> subscriptions = new ArrayList<>();
+    // First reads of the tabs not opened yet, by action; taken by the tab's first runQuery
+    private static final Map<String, CompletableFuture<?>> prefetched = new ConcurrentHashMap<>();
+    // ui.<action> histograms by action, so a click does not build the metric name again
+    private static final Map<String, Metrics.Histogram> uiTimes = new ConcurrentHashMap<>();
+
+    // Rows fetched per page, and how close to the last loaded row scrolling triggers the next page
+    private static final int PAGE_SIZE = Integer.getInteger("cinema.tables.pageSize", 200);
+    private static final int PREFETCH_ROWS = PAGE_SIZE / 4;
+
     /**
      * Displays the manager interface
      * @param stage The primary stage
@@ -24,21 +52,39 @@ public class ManagerGUI {
      */
     public static void display(Stage stage, String username) {
         currentUsername = username;
+        closeSubscriptions();
+        ChangeFeed.getInstance().start(); // Pushes changes made on other terminals to the tabs
         
         // Create main layout
         TabPane tabPane = new TabPane();
         
-        // Create tabs
-        Tab inventoryTab = createInventoryTab();
-        Tab personnelTab = createPersonnelTab();
-        Tab pricingTab = createPricingTab();
-        Tab revenueTab = createRevenueTab();
-        
-        tabPane.getTabs().addAll(inventoryTab, personnelTab, pricingTab, revenueTab);
+        // Create tabs; each one is built, and reads its data, when first selected
+        Map<Tab, Supplier<Node>> contents = new LinkedHashMap<>();
+        contents.put(new Tab("Inventory Management"), ManagerGUI::createInventoryContent);
+        contents.put(new Tab("Personnel Management"), ManagerGUI::createPersonnelContent);
+        contents.put(new Tab("Pricing Management"), ManagerGUI::createPricingContent);
+        contents.put(new Tab("Revenue & Tax Information"), ManagerGUI::createRevenueContent);
+        Consumer<Tab> build = tab -> {
+            Supplier<Node> content = contents.remove(tab);
+            if (content != null) {
+                tab.setContent(content.get());
+            }
+        };
+        tabPane.getSelectionModel().selectedItemProperty().addListener((observable, previous, selected) -> build.accept(selected));
+        for (Tab tab : contents.keySet()) {
+            tab.setClosable(false);
+        }
+        tabPane.getTabs().addAll(new ArrayList<>(contents.keySet()));
+        build.accept(tabPane.getSelectionModel().getSelectedItem());
+
+        // While the first tab loads, read the others' data in parallel
+        prefetch();
         
         // Add logout button
         Button logoutBtn = new Button("Logout");
         logoutBtn.setOnAction(e -> {
+            closeSubscriptions();
+            discardPrefetched();
             stage.close();
             new Main().start(new Stage());
         });
@@ -59,20 +105,25 @@ public class ManagerGUI {
         stage.setTitle("Group5 CinemaCenter - Manager Interface");
         stage.show();
     }
-    // For Product table (in createInventoryTab method):
+    // For Product table (in createInventoryContent method):
 private static void setupInventoryTable(TableView<Product> table) {
     // Create and configure columns
+    // Each column's user data is the SQL column it sorts by
     TableColumn<Product, String> nameCol = new TableColumn<>("Name");
     nameCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getName()));
+    nameCol.setUserData("name");
     
     TableColumn<Product, String> typeCol = new TableColumn<>("Type");
     typeCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getType()));
+    typeCol.setUserData("type");
     
     TableColumn<Product, Number> stockCol = new TableColumn<>("Stock");
     stockCol.setCellValueFactory(data -> new SimpleIntegerProperty(data.getValue().getStock()));
+    stockCol.setUserData("stock_quantity");
     
     TableColumn<Product, Number> priceCol = new TableColumn<>("Price");
     priceCol.setCellValueFactory(data -> new SimpleDoubleProperty(data.getValue().getPrice()));
+    priceCol.setUserData("price");
     priceCol.setCellFactory(tc -> new TableCell<Product, Number>() {
         @Override
         protected void updateItem(Number price, boolean empty) {
@@ -89,40 +140,47 @@ private static void setupInventoryTable(TableView<Product> table) {
     table.getColumns().addAll(nameCol, typeCol, stockCol, priceCol);
 }
 
-// For User table (in createPersonnelTab method):
+// For User table (in createPersonnelContent method):
 private static void setupPersonnelTable(TableView<User> table) {
     // Create and configure columns
+    // Each column's user data is the SQL column it sorts by
     TableColumn<User, String> usernameCol = new TableColumn<>("Username");
     usernameCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getUsername()));
+    usernameCol.setUserData("username");
     
     TableColumn<User, String> firstNameCol = new TableColumn<>("First Name");
     firstNameCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getFirstName()));
+    firstNameCol.setUserData("first_name");
     
     TableColumn<User, String> lastNameCol = new TableColumn<>("Last Name");
     lastNameCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getLastName()));
+    lastNameCol.setUserData("last_name");
     
     TableColumn<User, String> roleCol = new TableColumn<>("Role");
     roleCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getRole()));
+    roleCol.setUserData("CAST(role AS CHAR)"); // By name; the ENUM itself sorts by position
 
     // Add all columns to table
     table.getColumns().addAll(usernameCol, firstNameCol, lastNameCol, roleCol);
 }
 
-private static Tab createInventoryTab() {
-    Tab tab = new Tab("Inventory Management");
-    tab.setClosable(false);
-
+private static Node createInventoryContent() {
     VBox content = new VBox(10);
     content.setPadding(new Insets(10));
 
-    // Create table for products
+    // Create table for products, read page by page as the user scrolls
     TableView<Product> table = new TableView<>();
     setupInventoryTable(table);
+    PagedView<Product> inventory = new PagedView<>("inventory", table, productPager(), Product::getId,
+            (shown, loaded) -> !shown.sameAs(loaded) && !shown.isNewerThan(loaded), "Failed to load inventory: ");
+    TextField inventorySearchField = new TextField();
+    inventorySearchField.setPromptText("Search by name or type");
+    inventorySearchField.textProperty().addListener((observable, oldValue, newValue) -> inventory.setFilter(newValue));
 
     // Add controls for updating stock
     TextField quantityField = new TextField();
-    quantityField.setPromptText("Enter quantity");
-    Button updateStockBtn = new Button("Update Stock");
+    quantityField.setPromptText("Quantity to add (negative to remove)");
+    Button updateStockBtn = new Button("Adjust Stock");
 
     // Add controls for adding new stock
     TextField productNameField = new TextField();
@@ -142,9 +200,9 @@ private static Tab createInventoryTab() {
         Product selectedProduct = table.getSelectionModel().getSelectedItem();
         if (selectedProduct != null) {
             try {
-                int quantity = Integer.parseInt(quantityField.getText()); // Get the new stock value
-                updateProductStock(selectedProduct.getId(), quantity);   // Update stock in the database
-                refreshInventoryTable(table);                           // Refresh the inventory table
+                int quantity = Integer.parseInt(quantityField.getText()); // Get the change in stock
+                updateProductStock(selectedProduct.getId(), quantity,    // Apply it relative to the stored stock
+                        updated -> inventory.patch(List.of(updated), false)); // Then patch that row
             } catch (NumberFormatException ex) {
                 showAlert("Error", "Please enter a valid number for stock quantity");
             }
@@ -167,14 +225,15 @@ private static Tab createInventoryTab() {
         try {
             double price = Double.parseDouble(priceText);
             int stock = Integer.parseInt(stockText);
-            addNewProduct(name, type, price, stock);
-            refreshInventoryTable(table);
-
-            // Clear fields after adding the product
-            productNameField.clear();
-            productTypeField.clear();
-            productPriceField.clear();
-            productStockField.clear();
+            addNewProduct(name, type, price, stock, added -> {
+                inventory.patch(List.of(added), true);
+
+                // Clear fields after adding the product
+                productNameField.clear();
+                productTypeField.clear();
+                productPriceField.clear();
+                productStockField.clear();
+            });
         } catch (NumberFormatException ex) {
             showAlert("Error", "Invalid price or stock quantity. Please enter valid numbers");
         }
@@ -184,16 +243,17 @@ private static Tab createInventoryTab() {
     removeProductBtn.setOnAction(e -> {
         Product selectedProduct = table.getSelectionModel().getSelectedItem();
         if (selectedProduct != null) {
-            try (Connection conn = dbFacade.connect()) {
+            runUpdate("inventory.remove", conn -> {
                 String query = "DELETE FROM products WHERE product_id = ?";
-                PreparedStatement stmt = conn.prepareStatement(query);
-                stmt.setInt(1, selectedProduct.getId());
-                stmt.executeUpdate();
-                refreshInventoryTable(table);
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    stmt.setInt(1, selectedProduct.getId());
+                    return stmt.executeUpdate();
+                }
+            }, affectedRows -> {
+                InventoryLedger.getInstance().forget(selectedProduct.getId());
+                table.getItems().removeIf(p -> p.getId() == selectedProduct.getId());
                 showAlert("Success", "Product removed successfully");
-            } catch (SQLException ex) {
-                showAlert("Error", "Failed to remove product: " + ex.getMessage());
-            }
+            }, "Failed to remove product: ");
         } else {
             showAlert("Error", "Please select a product to remove");
         }
@@ -213,40 +273,45 @@ private static Tab createInventoryTab() {
     addControls.addRow(3, new Label("Stock:"), productStockField);
     addControls.addRow(4, addStockBtn, removeProductBtn); // Add both buttons here
 
-    content.getChildren().addAll(table, updateControls, addControls);
-    tab.setContent(content);
+    content.getChildren().addAll(inventorySearchField, table, updateControls, addControls);
 
-    // Load initial data
-    Platform.runLater(() -> refreshInventoryTable(table));
+    // Load the first page, then keep up with changes made elsewhere
+    inventory.reload(PAGE_SIZE);
+    subscriptions.add(EventBus.getInstance().subscribe(events -> applyStockChanges(inventory, events), EventBus.Kind.STOCK));
 
-    return tab;
+    return content;
 }
 
 
-    private static void addNewProduct(String name, String type, double price, int stock) {
-        try (Connection conn = dbFacade.connect()) {
+    private static void addNewProduct(String name, String type, double price, int stock, Consumer<Product> onSuccess) {
+        runUpdate("inventory.add", conn -> {
             String query = "INSERT INTO products (name, type, price, stock_quantity) VALUES (?, ?, ?, ?)";
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.setString(1, name);
-            stmt.setString(2, type);
-            stmt.setDouble(3, price);
-            stmt.setInt(4, stock);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            showAlert("Error", "Failed to add new product: " + e.getMessage());
-        }
+            try (PreparedStatement stmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setString(1, name);
+                stmt.setString(2, type);
+                stmt.setDouble(3, price);
+                stmt.setInt(4, stock);
+                stmt.executeUpdate();
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    keys.next();
+                    return loadProduct(conn, keys.getInt(1));
+                }
+            }
+        }, onSuccess, "Failed to add new product: ");
     }
     
 
-    private static Tab createPersonnelTab() {
-        Tab tab = new Tab("Personnel Management");
-        tab.setClosable(false);
-    
+    private static Node createPersonnelContent() {
         VBox content = new VBox(10);
         content.setPadding(new Insets(10));
     
         TableView<User> table = new TableView<>();
         setupPersonnelTable(table);
+        PagedView<User> personnel = new PagedView<>("personnel", table, personnelPager(currentUsername), User::getId,
+                (shown, loaded) -> true, "Failed to load personnel data: ");
+        TextField personnelSearchField = new TextField();
+        personnelSearchField.setPromptText("Search by username or name");
+        personnelSearchField.textProperty().addListener((observable, oldValue, newValue) -> personnel.setFilter(newValue));
     
         // Input fields
         TextField firstNameField = new TextField();
@@ -298,17 +363,19 @@ private static Tab createInventoryTab() {
                 return;
             }
         
-            try (Connection conn = dbFacade.connect()) {
+            runUpdate("personnel.add", conn -> {
                 String query = "INSERT INTO users (username, password, first_name, last_name, role) VALUES (?, ?, ?, ?, ?)";
-                PreparedStatement stmt = conn.prepareStatement(query);
-                stmt.setString(1, username);
-                stmt.setString(2, password);
-                stmt.setString(3, firstName);
-                stmt.setString(4, lastName);
-                stmt.setString(5, role);
-        
-                stmt.executeUpdate();
-                refreshPersonnelTable(table);
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    stmt.setString(1, username);
+                    stmt.setString(2, PasswordHasher.hash(password)); // Hashed off the FX thread
+                    stmt.setString(3, firstName);
+                    stmt.setString(4, lastName);
+                    stmt.setString(5, role);
+                    return stmt.executeUpdate();
+                }
+            }, affectedRows -> {
+                AuthenticationManager.invalidate(username);
+                personnel.refresh();
                 showAlert("Success", "Personnel added successfully");
         
                 // Clear fields
@@ -317,9 +384,7 @@ private static Tab createInventoryTab() {
                 usernameField.clear();
                 passwordField.clear();
                 roleCombo.setValue(null);
-            } catch (SQLException ex) {
-                showAlert("Error", "Failed to add personnel: " + ex.getMessage());
-            }
+            }, "Failed to add personnel: ");
         });
         
     
@@ -331,22 +396,22 @@ private static Tab createInventoryTab() {
                 return;
             }
     
-            try (Connection conn = dbFacade.connect()) {
+            runUpdate("personnel.remove", conn -> {
                 String query = "DELETE FROM users WHERE user_id = ? AND username != ?";
-                PreparedStatement stmt = conn.prepareStatement(query);
-                stmt.setInt(1, selectedUser.getId());
-                stmt.setString(2, currentUsername); // Prevent self-deletion
-    
-                int affectedRows = stmt.executeUpdate();
+                try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                    stmt.setInt(1, selectedUser.getId());
+                    stmt.setString(2, currentUsername); // Prevent self-deletion
+                    return stmt.executeUpdate();
+                }
+            }, affectedRows -> {
                 if (affectedRows > 0) {
-                    refreshPersonnelTable(table);
+                    AuthenticationManager.invalidate(selectedUser.getUsername());
+                    table.getItems().removeIf(u -> u.getId() == selectedUser.getId());
                     showAlert("Success", "Personnel removed successfully.");
                 } else {
                     showAlert("Error", "Failed to remove personnel.");
                 }
-            } catch (SQLException ex) {
-                showAlert("Error", "Failed to remove personnel: " + ex.getMessage());
-            }
+            }, "Failed to remove personnel: ");
         });
     
         // Layout for input fields
@@ -364,20 +429,16 @@ private static Tab createInventoryTab() {
         buttonBox.getChildren().addAll(addBtn, removeBtn);
     
         // Combine all components
-        content.getChildren().addAll(table, inputGrid, buttonBox);
-        tab.setContent(content);
+        content.getChildren().addAll(personnelSearchField, table, inputGrid, buttonBox);
     
-        // Load initial data
-        Platform.runLater(() -> refreshPersonnelTable(table));
+        // Load the first page
+        personnel.reload(PAGE_SIZE);
     
-        return tab;
+        return content;
     }
     
 
-    private static Tab createPricingTab() {
-        Tab tab = new Tab("Pricing Management");
-        tab.setClosable(false);
-    
+    private static Node createPricingContent() {
         GridPane grid = new GridPane();
         grid.setPadding(new Insets(10));
         grid.setHgap(10);
@@ -397,9 +458,7 @@ private static Tab createInventoryTab() {
                 double above60Discount = Double.parseDouble(above60DiscountField.getText());
                 double below18Discount = Double.parseDouble(below18DiscountField.getText());
     
-                updatePrices(ticketPrice, above60Discount, below18Discount);
-    
-                showAlert("Success", "Prices and discounts updated successfully.");
+                updatePrices(ticketPrice, above60Discount, below18Discount); // Reports success or failure itself
             } catch (NumberFormatException ex) {
                 showAlert("Error", "Invalid input. Please enter valid numbers.");
             }
@@ -411,82 +470,27 @@ private static Tab createInventoryTab() {
         grid.addRow(2, new Label("Below 18 Discount Rate (%):"), below18DiscountField);
         grid.addRow(3, updateBtn);
     
-        tab.setContent(grid);
-    
-        // Load current values
-        Platform.runLater(() -> loadCurrentPricing(ticketPriceField, above60DiscountField, below18DiscountField));
+        // Load current values, and again whenever they are changed on any terminal
+        loadCurrentPricing(ticketPriceField, above60DiscountField, below18DiscountField);
+        subscriptions.add(EventBus.getInstance().subscribe(
+                events -> loadCurrentPricing(ticketPriceField, above60DiscountField, below18DiscountField),
+                EventBus.Kind.PRICE));
     
-        return tab;
+        return grid;
     }
     
     
     private static void loadCurrentPricing(TextField ticketField, TextField above60Field, TextField below18Field) {
-        try (Connection conn = dbFacade.connect()) {
-            String query = "SELECT config_key, config_value FROM config WHERE config_key IN ('ticket_base_price', 'above_60_discount_rate', 'below_18_discount_rate')";
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-    
-            while (rs.next()) {
-                String key = rs.getString("config_key");
-                String value = rs.getString("config_value");
-    
-                if (key.equals("ticket_base_price")) {
-                    ticketField.setText(value);
-                } else if (key.equals("above_60_discount_rate")) {
-                    above60Field.setText(value);
-                } else if (key.equals("below_18_discount_rate")) {
-                    below18Field.setText(value);
-                }
-            }
-        } catch (SQLException e) {
-            showAlert("Error", "Failed to load current prices: " + e.getMessage());
-        }
+        // Served from the cached snapshot; only the very first call reads the config table
+        runQuery("prices.load", ticketField, PricingSnapshot::current, pricing -> {
+            ticketField.setText(pricing.getTicketBasePrice().toPlainString());
+            above60Field.setText(pricing.getAbove60DiscountRate().toPlainString());
+            below18Field.setText(pricing.getBelow18DiscountRate().toPlainString());
+        }, "Failed to load current prices: ");
     }
     
     
-    private static void UpdatePrices(double ticketPrice, double above60Discount, double below18Discount) {
-        try (Connection conn = dbFacade.connect()) {
-            conn.setAutoCommit(false); // Start a transaction
-    
-            String ticketQuery = "UPDATE config SET config_value = ? WHERE config_key = 'ticket_base_price'";
-            String above60Query = "UPDATE config SET config_value = ? WHERE config_key = 'above_60_discount_rate'";
-            String below18Query = "UPDATE config SET config_value = ? WHERE config_key = 'below_18_discount_rate'";
-    
-            try (PreparedStatement ticketStmt = conn.prepareStatement(ticketQuery);
-                 PreparedStatement above60Stmt = conn.prepareStatement(above60Query);
-                 PreparedStatement below18Stmt = conn.prepareStatement(below18Query)) {
-    
-                // Update ticket base price
-                ticketStmt.setString(1, String.valueOf(ticketPrice));
-                ticketStmt.executeUpdate();
-    
-                // Update discount rate for above 60
-                above60Stmt.setString(1, String.valueOf(above60Discount));
-                above60Stmt.executeUpdate();
-    
-                // Update discount rate for below 18
-                below18Stmt.setString(1, String.valueOf(below18Discount));
-                below18Stmt.executeUpdate();
-    
-                // Commit the transaction
-                conn.commit();
-    
-                // Single success alert after successful update
-                showAlert("Success", "Prices and discounts updated successfully.");
-            } catch (SQLException e) {
-                conn.rollback(); // Rollback transaction if any error occurs
-                showAlert("Error", "Failed to update prices: " + e.getMessage());
-            }
-        } catch (SQLException e) {
-            showAlert("Error", "Database connection issue: " + e.getMessage());
-        }
-    }
-    
-
-    private static Tab createRevenueTab() {
-        Tab tab = new Tab("Revenue & Tax Information");
-        tab.setClosable(false);
-
+    private static Node createRevenueContent() {
         VBox content = new VBox(10);
         content.setPadding(new Insets(10));
 
@@ -502,38 +506,36 @@ private static Tab createInventoryTab() {
             productTaxLabel,
             totalTaxLabel
         );
-
-        tab.setContent(content);
         
         // Load revenue data
-        Platform.runLater(() -> updateRevenueInformation(
+        updateRevenueInformation(
             totalRevenueLabel,
             ticketTaxLabel,
             productTaxLabel,
             totalTaxLabel
-        ));
+        );
         
-        return tab;
+        return content;
     }
 
     // Helper methods for database operations
-    private static void updateProductStock(int productId, int newStockQuantity) {
-        try (Connection conn = dbFacade.connect()) {
-            String query = "UPDATE products SET stock_quantity = ? WHERE product_id = ?";
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.setInt(1, newStockQuantity); // Set the new stock value
-            stmt.setInt(2, productId);        // Specify the product ID
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            showAlert("Error", "Failed to update stock: " + e.getMessage());
-        }
+    // Relative, so a sale made meanwhile on another terminal is never overwritten
+    private static void updateProductStock(int productId, int quantityChange, Consumer<Product> onSuccess) {
+        runUpdate("inventory.stock", conn -> {
+            InventoryLedger inventory = InventoryLedger.getInstance();
+            if (quantityChange >= 0) {
+                inventory.restock(conn, productId, quantityChange);
+            } else if (!inventory.tryDecrement(conn, productId, -quantityChange)) {
+                throw new SQLException("only " + inventory.getAvailable(conn, productId) + " in stock");
+            }
+            inventory.flush(); // Written now rather than behind, so the manager sees the stored value
+            return loadProduct(conn, productId); // Read back, so the row shows what was stored
+        }, onSuccess, "Failed to update stock: ");
     }
 
     private static void updatePrices(double ticketPrice, double above60Discount, double below18Discount) {
-        String alertMessage = ""; // Message to display in the alert
-        boolean success = false; // Flag to indicate success or failure
-    
-        try (Connection conn = dbFacade.connect()) {
+        runUpdate("prices.update", conn -> {
+            PricingSnapshot previous = PricingSnapshot.current(conn);
             conn.setAutoCommit(false); // Start a transaction
     
             String ticketQuery = "UPDATE config SET config_value = ? WHERE config_key = 'ticket_base_price'";
@@ -556,113 +558,243 @@ private static Tab createInventoryTab() {
                 below18Stmt.setString(1, String.valueOf(below18Discount));
                 below18Stmt.executeUpdate();
     
-                // Commit the transaction
+                // Commit the transaction, then let every reader see all three new values at once
                 conn.commit();
-                success = true; // Mark as successful
-                alertMessage = "Prices and discounts updated successfully.";
+                PricingSnapshot.publish(previous.withTicketPricing(BigDecimal.valueOf(ticketPrice),
+                        BigDecimal.valueOf(above60Discount), BigDecimal.valueOf(below18Discount)));
+                return true;
             } catch (SQLException e) {
                 conn.rollback(); // Rollback transaction if any error occurs
-                alertMessage = "Failed to update prices: " + e.getMessage();
+                throw e;
             }
-        } catch (SQLException e) {
-            alertMessage = "Database connection issue: " + e.getMessage();
-        }
-    
-        // Ensure only one alert is shown
-        final String finalAlertMessage = alertMessage;
-        final boolean isSuccess = success;
-        Platform.runLater(() -> {
-            if (isSuccess) {
-                showAlert("Success", finalAlertMessage);
-            } else {
-                showAlert("Error", finalAlertMessage);
-            }
-        });
+        }, committed -> showAlert("Success", "Prices and discounts updated successfully."), "Failed to update prices: ");
     }
     
 
-    private static void loadCurrentPrices(TextField ticketField, TextField discountField) {
-        try (Connection conn = dbFacade.connect()) {
-            String query = "SELECT config_key, config_value FROM config WHERE config_key IN ('ticket_base_price', 'age_discount_rate')";
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-            
-            while (rs.next()) {
-                String key = rs.getString("config_key");
-                String value = rs.getString("config_value");
-                
-                if (key.equals("ticket_base_price")) {
-                    ticketField.setText(value);
-                } else if (key.equals("age_discount_rate")) {
-                    discountField.setText(value);
-                }
-            }
-        } catch (SQLException e) {
-            showAlert("Error", "Failed to load current prices: " + e.getMessage());
-        }
-    }
-
-    private static void refreshInventoryTable(TableView<Product> table) {
-        try (Connection conn = dbFacade.connect()) {
-            String query = "SELECT * FROM products";
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-    
-            ObservableList<Product> products = FXCollections.observableArrayList();
-            while (rs.next()) {
-                products.add(new Product(
-                    rs.getInt("product_id"),
-                    rs.getString("name"),
-                    rs.getString("type"),
-                    rs.getInt("stock_quantity"),
-                    rs.getDouble("price")
-                ));
-            }
-            table.setItems(products);
-        } catch (SQLException e) {
-            showAlert("Error", "Failed to load inventory: " + e.getMessage());
-        }
+    private static KeysetPager<Product> productPager() {
+        return new KeysetPager<>("products", PRODUCT_COLUMNS, "product_id", null, List.of(),
+                List.of("name", "type"), ManagerGUI::readProduct);
     }
-    
 
-    private static void refreshPersonnelTable(TableView<User> table) {
-        try (Connection conn = dbFacade.connect()) {
-            String query = "SELECT * FROM users WHERE username != ?";
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.setString(1, currentUsername);
-            ResultSet rs = stmt.executeQuery();
-            
-            ObservableList<User> users = FXCollections.observableArrayList();
-            while (rs.next()) {
-                users.add(new User(
+    private static KeysetPager<User> personnelPager(String username) {
+        return new KeysetPager<>("users", "user_id, username, first_name, last_name, role", "user_id",
+                "username != ?", List.of(username), List.of("username", "first_name", "last_name"),
+                rs -> new User(
                     rs.getInt("user_id"),
                     rs.getString("username"),
                     rs.getString("first_name"),
                     rs.getString("last_name"),
                     rs.getString("role")
                 ));
+    }
+
+    /**
+     * Reads just the products named by a batch of stock events and patches the loaded rows;
+     * rows of deleted products are removed. Products added elsewhere are shown once the last
+     * page is loaded, otherwise they appear when their page is read.
+     */
+    private static void applyStockChanges(PagedView<Product> inventory, List<EventBus.Event> events) {
+        Set<Integer> ids = new HashSet<>();
+        for (EventBus.Event event : events) {
+            ids.add(event.getEntityId());
+        }
+        // Not keyed like runQuery, so a later batch never cancels this one
+        runUpdate("inventory.patch", conn -> {
+            List<Product> changed = new ArrayList<>();
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = 0; i < ids.size(); i++) {
+                placeholders.append(i == 0 ? "?" : ", ?");
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT " + PRODUCT_COLUMNS + " FROM products WHERE product_id IN (" + placeholders + ")")) {
+                int index = 1;
+                for (int id : ids) {
+                    stmt.setInt(index++, id);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        changed.add(readProduct(rs));
+                    }
+                }
+            }
+            return changed;
+        }, changed -> {
+            inventory.patch(changed, inventory.isFullyLoaded());
+            Set<Integer> removed = new HashSet<>(ids);
+            for (Product product : changed) {
+                removed.remove(product.getId());
             }
-            table.setItems(users);
-        } catch (SQLException e) {
-            showAlert("Error", "Failed to load personnel data: " + e.getMessage());
+            inventory.getTable().getItems().removeIf(p -> removed.contains(p.getId()));
+        }, "Failed to apply inventory changes: ");
+    }
+
+    private static void closeSubscriptions() {
+        for (EventBus.Subscription subscription : subscriptions) {
+            subscription.close();
         }
+        subscriptions.clear();
     }
 
-    private static void updateRevenueInformation(Label totalRevenue, Label ticketTax, Label productTax, Label totalTax) {
-        try (Connection conn = dbFacade.connect()) {
-            String query = "SELECT SUM(total_amount) as revenue, SUM(tax_amount) as tax FROM sales";
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(query);
-    
-            if (rs.next()) {
-                double revenue = rs.getDouble("revenue");
-                double tax = rs.getDouble("tax");
+    private static Product loadProduct(Connection conn, int productId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT " + PRODUCT_COLUMNS + " FROM products WHERE product_id = ?")) {
+            stmt.setInt(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Product " + productId + " no longer exists");
+                }
+                return readProduct(rs);
+            }
+        }
+    }
+
+    private static Product readProduct(ResultSet rs) throws SQLException {
+        return new Product(
+            rs.getInt("product_id"),
+            rs.getString("name"),
+            rs.getString("type"),
+            rs.getInt("stock_quantity"),
+            rs.getDouble("price"),
+            rs.getTimestamp("updated_at")
+        );
+    }
     
-                totalRevenue.setText(String.format("Total Revenue: %.2f TL", revenue));
-                totalTax.setText(String.format("Total Tax: %.2f TL", tax));
+
+    private static void updateRevenueInformation(Label totalRevenue, Label ticketTax, Label productTax, Label totalTax) {
+        // Reads the pre-aggregated monthly buckets instead of scanning every sale
+        runQuery("revenue.load", totalRevenue, RevenueRollup::loadAllTime, totals -> {
+            totalRevenue.setText(String.format("Total Revenue: %.2f TL", totals.getRevenue()));
+            ticketTax.setText(String.format("Ticket Tax: %.2f TL", totals.getTicketTax()));
+            productTax.setText(String.format("Product Tax: %.2f TL", totals.getProductTax()));
+            totalTax.setText(String.format("Total Tax: %.2f TL", totals.getTotalTax()));
+        }, "Failed to load revenue data: ");
+    }
+
+    /**
+     * Runs a read on the data-access executor and applies the result on the FX thread.
+     * A newer read with the same key cancels this one, so a slow, superseded refresh
+     * never overwrites fresher data. Timed as db.&lt;action&gt; and, until the result is shown,
+     * ui.&lt;action&gt;; its queries are traced to the UI action ManagerGUI.&lt;action&gt;.
+     * The first read of a tab uses the result {@link #prefetch} started for the action, if any.
+     *
+     * @param action metric name, e.g. "inventory.refresh"
+     * @param key the view being refreshed
+     * @param query the database work
+     * @param onSuccess applies the result to the view (FX thread)
+     * @param errorPrefix prefix for the error alert
+     */
+    private static <T> void runQuery(String action, Object key, DataAccessExecutor.Query<T> query,
+                                     Consumer<T> onSuccess, String errorPrefix) {
+        runQuery(action, key, query, onSuccess, () -> { }, errorPrefix);
+    }
+
+    /**
+     * Like {@link #runQuery(String, Object, DataAccessExecutor.Query, Consumer, String)}, and runs
+     * onFailure on the FX thread after the error was reported.
+     */
+    @SuppressWarnings("try")
+    private static <T> void runQuery(String action, Object key, DataAccessExecutor.Query<T> query,
+                                     Consumer<T> onSuccess, Runnable onFailure, String errorPrefix) {
+        Metrics.Histogram uiTime = uiTimes.computeIfAbsent(action, a -> Metrics.histogram("ui." + a));
+        long start = System.nanoTime();
+        CompletableFuture<T> prefetch = takePrefetched(action, key);
+        CompletableFuture<T> future;
+        if (prefetch != null) {
+            future = prefetch; // Read when the window opened
+        } else {
+            try (UiAction.Scope ignored = UiAction.enter("ManagerGUI." + action)) {
+                future = DataAccessExecutor.submitLatest(key, action, query);
+            }
+        }
+        future.whenComplete((result, error) -> Platform.runLater(() -> {
+            if (!DataAccessExecutor.isCurrent(key, future)) {
+                return; // Superseded by a newer refresh
             }
-        } catch (SQLException e) {
-            showAlert("Error", "Failed to load revenue data: " + e.getMessage());
+            handleResult(result, error, onSuccess, onFailure, errorPrefix);
+            uiTime.recordSince(start);
+        }));
+    }
+
+    /**
+     * Starts the first reads of the personnel, pricing and revenue tabs in parallel, so they
+     * show their data as soon as they are opened. Timed as db.&lt;action&gt;.prefetch.
+     */
+    private static void prefetch() {
+        discardPrefetched();
+        KeysetPager<User> personnel = personnelPager(currentUsername);
+        startPrefetch("personnel.refresh", conn -> personnel.fetch(conn, null, PAGE_SIZE));
+        startPrefetch("prices.load", PricingSnapshot::current);
+        startPrefetch("revenue.load", RevenueRollup::loadAllTime);
+        // A price read before a change made elsewhere would be stale by the time the tab opens
+        subscriptions.add(EventBus.getInstance().subscribe(
+                events -> discard(prefetched.remove("prices.load")), EventBus.Kind.PRICE));
+    }
+
+    @SuppressWarnings("try")
+    private static void startPrefetch(String action, DataAccessExecutor.Query<?> query) {
+        try (UiAction.Scope ignored = UiAction.enter("ManagerGUI." + action + ".prefetch")) {
+            prefetched.put(action, DataAccessExecutor.submit(action + ".prefetch", query));
+        }
+    }
+
+    // A failed read ahead is run again rather than reported, since the cause may have passed
+    @SuppressWarnings("unchecked")
+    private static <T> CompletableFuture<T> takePrefetched(String action, Object key) {
+        CompletableFuture<T> future = (CompletableFuture<T>) prefetched.remove(action);
+        if (future == null || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return DataAccessExecutor.adoptLatest(key, future);
+    }
+
+    private static void discardPrefetched() {
+        for (CompletableFuture<?> future : prefetched.values()) {
+            discard(future);
+        }
+        prefetched.clear();
+    }
+
+    private static void discard(CompletableFuture<?> future) {
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Runs a write on the data-access executor and reports the outcome on the FX thread.
+     * Timed like {@link #runQuery}.
+     *
+     * @param action metric name, e.g. "prices.update"
+     * @param update the database work
+     * @param onSuccess runs after the write succeeded (FX thread)
+     * @param errorPrefix prefix for the error alert
+     */
+    @SuppressWarnings("try")
+    private static <T> void runUpdate(String action, DataAccessExecutor.Query<T> update, Consumer<T> onSuccess, String errorPrefix) {
+        Metrics.Histogram uiTime = uiTimes.computeIfAbsent(action, a -> Metrics.histogram("ui." + a));
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try (UiAction.Scope ignored = UiAction.enter("ManagerGUI." + action)) {
+            future = DataAccessExecutor.submit(action, update);
+        }
+        future.whenComplete((result, error) -> Platform.runLater(() -> {
+            handleResult(result, error, onSuccess, () -> { }, errorPrefix);
+            uiTime.recordSince(start);
+        }));
+    }
+
+    private static <T> void handleResult(T result, Throwable error, Consumer<T> onSuccess, Runnable onFailure,
+                                         String errorPrefix) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof CancellationException) {
+            return;
+        }
+        if (error != null) {
+            showAlert("Error", errorPrefix + error.getMessage());
+            onFailure.run();
+        } else {
+            onSuccess.accept(result);
         }
     }
     
@@ -681,13 +813,15 @@ private static Tab createInventoryTab() {
         private final String type;
         private final int stock;
         private final double price;
+        private final Timestamp updatedAt;
 
-        public Product(int id, String name, String type, int stock, double price) {
+        public Product(int id, String name, String type, int stock, double price, Timestamp updatedAt) {
             this.id = id;
             this.name = name;
             this.type = type;
             this.stock = stock;
             this.price = price;
+            this.updatedAt = updatedAt;
         }
 
         public int getId() { return id; }
@@ -695,6 +829,191 @@ private static Tab createInventoryTab() {
         public String getType() { return type; }
         public int getStock() { return stock; }
         public double getPrice() { return price; }
+        public Timestamp getUpdatedAt() { return updatedAt; }
+
+        boolean isNewerThan(Product other) {
+            return updatedAt != null && other.updatedAt != null && updatedAt.after(other.updatedAt);
+        }
+
+        // Same visible values, so the row does not need to be redrawn
+        boolean sameAs(Product other) {
+            return id == other.id && stock == other.stock && price == other.price
+                    && name.equals(other.name) && type.equals(other.type);
+        }
+    }
+
+    /**
+     * Connects a TableView to a {@link KeysetPager}: shows the first page, fetches the next one
+     * when the user scrolls near the last loaded row, and reads from the top again when the sort
+     * order (clicked column headers) or the filter changes. Only used on the FX thread.
+     */
+    private static class PagedView<T> {
+        private final TableView<T> table;
+        private final ToIntFunction<T> idOf;
+        private final BiPredicate<T, T> replaces; // (shown row, loaded row) -> whether to show the loaded one
+        private final String name; // Metric name prefix
+        private final String errorPrefix;
+        private KeysetPager<T> pager;
+        private KeysetPager.Cursor next; // Null once the last page is loaded
+        private boolean loadingMore;
+        private int generation; // Counts reloads; a page read for an earlier one is dropped
+        private final Object pageKey = new Object(); // Page reads must not cancel a reload, nor the reverse
+
+        PagedView(String name, TableView<T> table, KeysetPager<T> pager, ToIntFunction<T> idOf,
+                  BiPredicate<T, T> replaces, String errorPrefix) {
+            this.name = name;
+            this.table = table;
+            this.pager = pager;
+            this.idOf = idOf;
+            this.replaces = replaces;
+            this.errorPrefix = errorPrefix;
+
+            // Sorting happens in SQL; the table only reports which column was clicked
+            table.setSortPolicy(t -> {
+                applySortOrder();
+                return true;
+            });
+            table.setRowFactory(tv -> new TableRow<T>() {
+                @Override
+                protected void updateItem(T item, boolean empty) {
+                    super.updateItem(item, empty);
+                    if (!empty && getIndex() >= table.getItems().size() - PREFETCH_ROWS) {
+                        loadMore();
+                    }
+                }
+            });
+        }
+
+        TableView<T> getTable() {
+            return table;
+        }
+
+        /**
+         * Whether every row matching the current filter is loaded, and no filter is set.
+         */
+        boolean isFullyLoaded() {
+            return next == null && pager.getFilter().isEmpty();
+        }
+
+        void setFilter(String text) {
+            pager = pager.withFilter(text);
+            reload(PAGE_SIZE);
+        }
+
+        /**
+         * Reads the rows loaded so far again, e.g. after rows were added or removed.
+         */
+        void refresh() {
+            reload(Math.max(PAGE_SIZE, table.getItems().size()));
+        }
+
+        void reload(int limit) {
+            KeysetPager<T> current = pager;
+            generation++;
+            loadingMore = false; // A pending next page is dropped when it arrives
+            next = null;         // The old cursor belongs to the old sort and filter
+            runQuery(name + ".refresh", table, conn -> current.fetch(conn, null, limit), page -> {
+                replaceAll(page.getRows());
+                next = page.getNext();
+            }, errorPrefix);
+        }
+
+        private void loadMore() {
+            if (loadingMore || next == null) {
+                return;
+            }
+            loadingMore = true;
+            KeysetPager<T> current = pager;
+            KeysetPager.Cursor after = next;
+            int started = generation;
+            runQuery(name + ".page", pageKey, conn -> current.fetch(conn, after, PAGE_SIZE), page -> {
+                if (started != generation) {
+                    return; // Read for rows that were replaced since
+                }
+                loadingMore = false;
+                Set<Integer> shown = loadedIds();
+                List<T> rows = new ArrayList<>();
+                for (T row : page.getRows()) {
+                    if (!shown.contains(idOf.applyAsInt(row))) { // Already shown, e.g. added locally
+                        rows.add(row);
+                    }
+                }
+                table.getItems().addAll(rows);
+                next = page.getNext();
+            }, () -> {
+                if (started == generation) {
+                    loadingMore = false; // Scrolling tries again
+                }
+            }, errorPrefix);
+        }
+
+        /**
+         * Replaces loaded rows by id with newer versions. Rows that are not loaded are appended
+         * if addNew is set, otherwise they appear once their page is read.
+         */
+        void patch(List<T> rows, boolean addNew) {
+            ObservableList<T> items = table.getItems();
+            T selected = table.getSelectionModel().getSelectedItem();
+            Map<Integer, Integer> positions = new HashMap<>();
+            for (int i = 0; i < items.size(); i++) {
+                positions.put(idOf.applyAsInt(items.get(i)), i);
+            }
+            for (T row : rows) {
+                Integer position = positions.get(idOf.applyAsInt(row));
+                if (position == null) {
+                    if (addNew) {
+                        items.add(row);
+                    }
+                } else if (replaces.test(items.get(position), row)) {
+                    items.set(position, row);
+                }
+            }
+            reselect(selected);
+        }
+
+        private void replaceAll(List<T> rows) {
+            T selected = table.getSelectionModel().getSelectedItem();
+            table.getItems().setAll(rows);
+            reselect(selected);
+        }
+
+        // A replaced row is a new object; select it again by id
+        private void reselect(T selected) {
+            if (selected == null || table.getSelectionModel().getSelectedItem() == selected) {
+                return;
+            }
+            int id = idOf.applyAsInt(selected);
+            for (T row : table.getItems()) {
+                if (idOf.applyAsInt(row) == id) {
+                    table.getSelectionModel().select(row);
+                    return;
+                }
+            }
+        }
+
+        private Set<Integer> loadedIds() {
+            Set<Integer> ids = new HashSet<>();
+            for (T row : table.getItems()) {
+                ids.add(idOf.applyAsInt(row));
+            }
+            return ids;
+        }
+
+        private void applySortOrder() {
+            String column = null;
+            boolean ascending = true;
+            if (!table.getSortOrder().isEmpty()) {
+                TableColumn<T, ?> first = table.getSortOrder().get(0);
+                column = (String) first.getUserData();
+                ascending = first.getSortType() == TableColumn.SortType.ASCENDING;
+            }
+            KeysetPager<T> sorted = pager.withSort(column, ascending);
+            if (sorted.getSortColumn().equals(pager.getSortColumn()) && sorted.isAscending() == pager.isAscending()) {
+                return; // The sort policy also runs when the items change
+            }
+            pager = sorted;
+            reload(PAGE_SIZE);
+        }
     }
 
     private static class User {
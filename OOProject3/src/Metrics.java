@@ -0,0 +1,389 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Named counters, gauges and latency histograms for the whole application.
+ *
+ * Names are dotted and say where the time goes: auth.login, pool.borrow, db.&lt;operation&gt; for
+ * time spent holding a connection, ui.&lt;action&gt; for a click until its result is on screen.
+ * Call sites look a metric up once, keep it in a static final field, and record into it; recording
+ * never allocates, so it is safe on the selling path and inside the pool. Where the name depends on
+ * an argument (ui.&lt;action&gt;), keep the metrics in a static map keyed by that argument instead.
+ *
+ * Every metric is registered as an MBean under "Group5:type=&lt;kind&gt;,name=&lt;name&gt;" (jconsole,
+ * VisualVM). {@link #startReporting()} also appends a snapshot of every metric to a CSV file every
+ * cinema.metrics.intervalSec seconds (default 60, 0 turns it off); histogram rows there cover only
+ * that interval, so an evening-rush p99 is not diluted by a quiet morning.
+ * The file is cinema.metrics.file (default ~/.group5cinema/metrics.csv).
+ */
+public final class Metrics {
+
+    private static final String DOMAIN = "Group5";
+    private static final String CSV_HEADER = "time,name,kind,count,value,p50_ms,p90_ms,p99_ms,max_ms";
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService reporter;
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the counter with this name, creating and registering it on first use.
+     */
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> register("Counter", n, new Counter(), CounterMBean.class));
+    }
+
+    /**
+     * Returns the latency histogram with this name, creating and registering it on first use.
+     */
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> register("Histogram", n, new Histogram(), HistogramMBean.class));
+    }
+
+    /**
+     * Registers a value that is read when it is looked at, e.g. a queue depth. A gauge registered
+     * again under the same name replaces the old one.
+     */
+    public static void gauge(String name, DoubleSupplier value) {
+        Gauge gauge = new Gauge(value);
+        Gauge previous = gauges.put(name, gauge);
+        if (previous != null) {
+            unregister("Gauge", name);
+        }
+        register("Gauge", name, gauge, GaugeMBean.class);
+    }
+
+    /**
+     * Starts appending snapshots to the CSV file. Does nothing if already running or turned off.
+     */
+    public static synchronized void startReporting() {
+        long interval = Long.getLong("cinema.metrics.intervalSec", 60L);
+        if (reporter != null || interval <= 0) {
+            return;
+        }
+        Path file = Paths.get(System.getProperty("cinema.metrics.file",
+                Paths.get(System.getProperty("user.home"), ".group5cinema", "metrics.csv").toString()));
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(() -> writeSnapshot(file), interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the CSV reporter; the MBeans stay registered.
+     */
+    public static synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    // One row per metric; histogram rows cover the time since the previous snapshot
+    private static void writeSnapshot(Path file) {
+        String time = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            boolean isNew = !Files.exists(file);
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (isNew) {
+                    out.write(CSV_HEADER);
+                    out.newLine();
+                }
+                for (Map.Entry<String, Counter> e : new ConcurrentSkipListMap<>(counters).entrySet()) {
+                    out.write(String.format("%s,%s,counter,%d,,,,,", time, e.getKey(), e.getValue().getCount()));
+                    out.newLine();
+                }
+                for (Map.Entry<String, Gauge> e : new ConcurrentSkipListMap<>(gauges).entrySet()) {
+                    out.write(String.format("%s,%s,gauge,,%.3f,,,,", time, e.getKey(), e.getValue().getValue()));
+                    out.newLine();
+                }
+                for (Map.Entry<String, Histogram> e : new ConcurrentSkipListMap<>(histograms).entrySet()) {
+                    Snapshot s = e.getValue().intervalSnapshot();
+                    out.write(String.format("%s,%s,histogram,%d,%.3f,%.3f,%.3f,%.3f,%.3f", time, e.getKey(),
+                            s.count, s.meanMillis(), s.percentileMillis(50), s.percentileMillis(90),
+                            s.percentileMillis(99), s.max / 1_000_000.0));
+                    out.newLine();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not write metrics to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static <T> T register(String kind, String name, T metric, Class<? super T> mbeanInterface) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(kind, name);
+            if (!server.isRegistered(objectName)) {
+                @SuppressWarnings("unchecked")
+                Class<Object> type = (Class<Object>) mbeanInterface;
+                server.registerMBean(new StandardMBean(metric, type), objectName);
+            }
+        } catch (JMException | RuntimeException e) {
+            // Still recorded and written to the CSV, just not visible over JMX
+            System.err.println("Could not register metric " + name + ": " + e.getMessage());
+        }
+        return metric;
+    }
+
+    private static void unregister(String kind, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(kind, name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException | RuntimeException ignored) {
+            // Registered again right after
+        }
+    }
+
+    private static ObjectName objectName(String kind, String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=" + kind + ",name=" + ObjectName.quote(name));
+    }
+
+    /** JMX view of a {@link Counter}. */
+    public interface CounterMBean {
+        long getCount();
+    }
+
+    /** JMX view of a gauge. */
+    public interface GaugeMBean {
+        double getValue();
+    }
+
+    /** JMX view of a {@link Histogram}; everything since start, in milliseconds. */
+    public interface HistogramMBean {
+        long getCount();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP90Millis();
+        double getP99Millis();
+        double getP999Millis();
+        double getMaxMillis();
+    }
+
+    /**
+     * A count that only goes up.
+     */
+    public static final class Counter implements CounterMBean {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long n) {
+            count.add(n);
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+    }
+
+    private static final class Gauge implements GaugeMBean {
+        private final DoubleSupplier value;
+
+        Gauge(DoubleSupplier value) {
+            this.value = value;
+        }
+
+        @Override
+        public double getValue() {
+            try {
+                return value.getAsDouble();
+            } catch (RuntimeException e) {
+                return Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Latency histogram with fixed log-linear buckets, in the spirit of HdrHistogram: 16 linear
+     * buckets per power of two, so every percentile is within about 6% of the true value, from
+     * 1 ns up to about 18 minutes (longer values land in the last bucket). Recording is a couple
+     * of atomic increments into a preallocated array.
+     */
+    public static final class Histogram implements HistogramMBean {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int MAX_BITS = 40; // 2^40 ns, about 18 minutes
+        private static final int BUCKETS = (MAX_BITS - SUB_BUCKET_BITS) * SUB_BUCKETS + 2 * SUB_BUCKETS;
+        private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+        private long[] lastReported; // Only touched by the reporter thread
+
+        /**
+         * Records a duration in nanoseconds.
+         */
+        public void record(long nanos) {
+            long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+            buckets.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        /**
+         * Records the time since a System.nanoTime() taken before the operation.
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        // Values below 32 get their own bucket; above, 16 buckets per power of two
+        static int bucketOf(long value) {
+            if (value < 2 * SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return shift * SUB_BUCKETS + (int) (value >>> shift);
+        }
+
+        // The middle of a bucket, as the value reported for it
+        static long valueOf(int bucket) {
+            if (bucket < 2 * SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+            return lowest + (1L << shift) / 2;
+        }
+
+        @Override public long getCount() { return count.sum(); }
+        @Override public double getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0.0 : sum.sum() / 1_000_000.0 / n;
+        }
+        @Override public double getP50Millis() { return snapshot().percentileMillis(50); }
+        @Override public double getP90Millis() { return snapshot().percentileMillis(90); }
+        @Override public double getP99Millis() { return snapshot().percentileMillis(99); }
+        @Override public double getP999Millis() { return snapshot().percentileMillis(99.9); }
+        @Override public double getMaxMillis() { return max.get() / 1_000_000.0; }
+
+        /**
+         * Copies the buckets; everything recorded since start.
+         */
+        public Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return new Snapshot(counts, max.get());
+        }
+
+        // What was recorded since the previous call; max is the highest bucket seen in the interval
+        synchronized Snapshot intervalSnapshot() {
+            if (lastReported == null) {
+                lastReported = new long[BUCKETS];
+            }
+            long[] counts = new long[BUCKETS];
+            long intervalMax = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                long total = buckets.get(i);
+                counts[i] = total - lastReported[i];
+                lastReported[i] = total;
+                if (counts[i] > 0) {
+                    intervalMax = valueOf(i);
+                }
+            }
+            return new Snapshot(counts, intervalMax);
+        }
+
+        @Override
+        public String toString() {
+            Snapshot s = snapshot();
+            return String.format("Histogram[count=%d, mean=%.2fms, p50=%.2fms, p99=%.2fms, max=%.2fms]",
+                    s.count, s.meanMillis(), s.percentileMillis(50), s.percentileMillis(99), s.max / 1_000_000.0);
+        }
+    }
+
+    /**
+     * Bucket counts of a histogram at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        Snapshot(long[] counts, long max) {
+            this.counts = counts;
+            this.max = max;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+        }
+
+        public long getCount() { return count; }
+
+        public double meanMillis() {
+            if (count == 0) {
+                return 0.0;
+            }
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                sum += (double) counts[i] * Histogram.valueOf(i);
+            }
+            return sum / count / 1_000_000.0;
+        }
+
+        /**
+         * @param percentile e.g. 99 or 99.9
+         */
+        public double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0.0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(Histogram.valueOf(i), max > 0 ? max : Long.MAX_VALUE) / 1_000_000.0;
+                }
+            }
+            return max / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,473 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates and upgrades the database schema from the numbered scripts in migrations/, and checks
+ * that the result is the schema this code expects.
+ *
+ * Each script is one step: its statements and its row in schema_version are committed together.
+ * MySQL commits DDL implicitly, so a step that fails halfway can leave its earlier DDL behind;
+ * the failing statement is reported and the step is retried from the start on the next run.
+ * The SHA-256 of every applied script is recorded, and a script changed after it was applied
+ * stops startup: add a new step instead of editing an old one. The one exception is a fix that
+ * leaves an applied database as it was; the old checksum goes into CORRECTED, and databases that
+ * recorded it are moved to the new one.
+ *
+ * A database created by hand before schema_version existed is adopted: each script's
+ * "-- applied-if:" query tells whether its changes are already there.
+ *
+ * Startup migrates automatically unless cinema.migrations.auto is false; then it only validates.
+ */
+public final class MigrationRunner {
+
+    // In order; the number before the first '_' is the version
+    private static final String[] SCRIPTS = {
+            "001_initial_schema.sql",
+            "002_revenue_rollups.sql",
+            "003_product_updated_at.sql",
+            "004_paging_indexes.sql",
+            "005_change_log.sql",
+            "006_query_indexes.sql",
+            "007_sales_archive.sql",
+            "008_journal_replays.sql",
+            "009_sale_tax_rates.sql",
+            "010_user_changes.sql",
+    };
+
+    private static final String APPLIED_IF = "-- applied-if:";
+    private static final String LOCK_NAME = "group5.migrations";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private static final String CREATE_VERSION_TABLE =
+            "CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INT PRIMARY KEY, "
+                    + "description VARCHAR(100) NOT NULL, "
+                    + "checksum CHAR(64) NOT NULL, "
+                    + "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "execution_ms INT NOT NULL)";
+
+    // Earlier checksums of scripts fixed after release, by version; see the class comment
+    private static final Map<Integer, List<String>> CORRECTED = Map.of(
+            // 002 told the operator to rebuild the rollups by hand
+            2, List.of("f91a928da81214aa445938ac3a5527e7f51ea674a86b20f287647bcf01a373bb"),
+            // 006 dropped an index the server had already dropped, so it failed whenever it ran
+            6, List.of("6d76dc77f0ec62d7a82f981f357312037b115803cd7e38192d9f56e81c6c9578"));
+    // Creates the revenue rollups, which are then filled from the sales already there
+    private static final int ROLLUPS_VERSION = 2;
+
+    // Every table and column the code reads or writes
+    private static final Map<String, String[]> EXPECTED_COLUMNS = new LinkedHashMap<>();
+    private static final String[] EXPECTED_TRIGGERS = {
+            "tickets_sold", "tickets_released", "products_added", "products_changed", "products_removed", "config_changed",
+            "users_changed", "users_removed"
+    };
+
+    static {
+        EXPECTED_COLUMNS.put("users", new String[]{"user_id", "username", "password", "first_name", "last_name", "role"});
+        EXPECTED_COLUMNS.put("movies", new String[]{"movie_id", "title", "poster_path", "summary_path", "duration"});
+        EXPECTED_COLUMNS.put("movie_genres", new String[]{"movie_id", "genre"});
+        EXPECTED_COLUMNS.put("halls", new String[]{"hall_id", "name", "capacity"});
+        EXPECTED_COLUMNS.put("sessions", new String[]{"session_id", "start_time", "duration"});
+        EXPECTED_COLUMNS.put("schedule", new String[]{"schedule_id", "movie_id", "hall_id", "session_id", "schedule_date"});
+        EXPECTED_COLUMNS.put("products", new String[]{"product_id", "name", "type", "price", "stock_quantity", "image_path", "updated_at"});
+        EXPECTED_COLUMNS.put("customers", new String[]{"customer_id", "first_name", "last_name", "birth_date"});
+        EXPECTED_COLUMNS.put("sales", new String[]{"sale_id", "customer_id", "cashier_id", "sale_date", "total_amount", "tax_amount", "invoice_path",
+                "ticket_tax_rate", "product_tax_rate"});
+        EXPECTED_COLUMNS.put("tickets", new String[]{"ticket_id", "sale_id", "schedule_id", "seat_number", "base_price", "discount_applied", "is_cancelled"});
+        EXPECTED_COLUMNS.put("sale_items", new String[]{"sale_id", "product_id", "quantity", "unit_price"});
+        EXPECTED_COLUMNS.put("config", new String[]{"config_key", "config_value"});
+        EXPECTED_COLUMNS.put("revenue_daily", new String[]{"sale_day", "sale_count", "revenue", "ticket_tax", "product_tax"});
+        EXPECTED_COLUMNS.put("revenue_monthly", new String[]{"sale_month", "sale_count", "revenue", "ticket_tax", "product_tax"});
+        EXPECTED_COLUMNS.put("change_log", new String[]{"change_id", "kind", "entity_id", "detail", "changed_at"});
+        EXPECTED_COLUMNS.put("journal_replays", new String[]{"entry_id", "sale_id", "replayed_at"});
+        EXPECTED_COLUMNS.put("available_seats", new String[]{"schedule_id", "hall_name", "seats_available"});
+        // Cold storage and the views reports read; see SalesArchiver
+        for (String table : new String[]{"sales", "tickets", "sale_items"}) {
+            EXPECTED_COLUMNS.put(table + "_archive", EXPECTED_COLUMNS.get(table));
+            EXPECTED_COLUMNS.put(table + "_all", EXPECTED_COLUMNS.get(table));
+        }
+    }
+
+    private MigrationRunner() {
+    }
+
+    /**
+     * One migration script.
+     */
+    public static class Script {
+        private final int version;
+        private final String description;
+        private final String text;
+        private final String checksum;
+
+        Script(String fileName, String text) {
+            int separator = fileName.indexOf('_');
+            this.version = Integer.parseInt(fileName.substring(0, separator));
+            this.description = fileName.substring(separator + 1, fileName.length() - ".sql".length()).replace('_', ' ');
+            this.text = text.replace("\r\n", "\n"); // Same checksum on every checkout
+            this.checksum = sha256(this.text);
+        }
+
+        public int getVersion() { return version; }
+        public String getDescription() { return description; }
+        public String getChecksum() { return checksum; }
+
+        // True for this script's checksum, or one it replaced without changing its effect
+        boolean matches(String recorded) {
+            return checksum.equals(recorded) || CORRECTED.getOrDefault(version, List.of()).contains(recorded);
+        }
+
+        String getAppliedIf() {
+            for (String line : text.split("\n")) {
+                if (line.startsWith(APPLIED_IF)) {
+                    return line.substring(APPLIED_IF.length()).trim();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%03d %s", version, description);
+        }
+    }
+
+    /**
+     * Startup entry point: migrates (unless cinema.migrations.auto is false), then validates.
+     *
+     * @throws SQLException with a message fit to show the user if the schema cannot be brought up to date
+     */
+    public static void migrateAndValidate(Connection conn) throws SQLException {
+        if (Boolean.parseBoolean(System.getProperty("cinema.migrations.auto", "true"))) {
+            migrate(conn);
+        }
+        validate(conn);
+    }
+
+    /**
+     * Applies every script not applied yet, in order. Terminals starting at the same time
+     * take turns through a named lock, so each step runs once.
+     *
+     * @return the scripts applied by this call
+     */
+    public static List<Script> migrate(Connection conn) throws SQLException {
+        List<Script> scripts = loadScripts();
+        acquireLock(conn);
+        try {
+            boolean adopting = !tableExists(conn, "schema_version") && tableExists(conn, "users");
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_VERSION_TABLE);
+            }
+            Map<Integer, String> applied = loadApplied(conn);
+            List<Script> ran = new ArrayList<>();
+            boolean rollupsCreated = false;
+            for (Script script : scripts) {
+                String checksum = applied.get(script.version);
+                if (checksum != null) {
+                    if (!script.matches(checksum)) {
+                        throw new SQLException("Migration " + script + " was changed after it was applied. "
+                                + "Restore it and add the change as a new migration.");
+                    }
+                    if (!checksum.equals(script.checksum)) {
+                        updateChecksum(conn, script);
+                    }
+                    continue;
+                }
+                if (adopting && alreadyApplied(conn, script)) {
+                    record(conn, script, 0); // Adopted: the changes were made by hand
+                    continue;
+                }
+                adopting = false; // Everything after the first missing step is run for real
+                apply(conn, script);
+                ran.add(script);
+                rollupsCreated |= script.version == ROLLUPS_VERSION;
+            }
+            if (rollupsCreated) {
+                // After the last step, since the rebuild reads sales_all and the per-sale tax rates
+                RevenueRollup.rebuild(conn);
+            }
+            return ran;
+        } finally {
+            releaseLock(conn);
+        }
+    }
+
+    /**
+     * Checks that every migration is applied and every table, column, view and trigger the code
+     * uses exists.
+     *
+     * @throws SQLException listing everything that is missing
+     */
+    public static void validate(Connection conn) throws SQLException {
+        List<String> problems = new ArrayList<>();
+
+        List<Script> scripts = loadScripts();
+        Map<Integer, String> applied = tableExists(conn, "schema_version") ? loadApplied(conn) : new HashMap<>();
+        int latest = scripts.get(scripts.size() - 1).version;
+        for (Script script : scripts) {
+            if (!applied.containsKey(script.version)) {
+                problems.add("migration " + script + " has not been applied (run: java MigrationRunner migrate)");
+            }
+        }
+        for (int version : applied.keySet()) {
+            if (version > latest) {
+                problems.add("the database has migration " + version + ", which this version of the application does not know; update the application");
+            }
+        }
+
+        Map<String, Set<String>> columns = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT LOWER(table_name), LOWER(column_name) FROM information_schema.columns "
+                     + "WHERE table_schema = DATABASE()")) {
+            while (rs.next()) {
+                columns.computeIfAbsent(rs.getString(1), t -> new HashSet<>()).add(rs.getString(2));
+            }
+        }
+        EXPECTED_COLUMNS.forEach((table, expected) -> {
+            Set<String> actual = columns.get(table);
+            if (actual == null) {
+                problems.add("table " + table + " is missing");
+                return;
+            }
+            for (String column : expected) {
+                if (!actual.contains(column)) {
+                    problems.add("column " + table + "." + column + " is missing");
+                }
+            }
+        });
+
+        Set<String> triggers = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT LOWER(trigger_name) FROM information_schema.triggers "
+                     + "WHERE trigger_schema = DATABASE()")) {
+            while (rs.next()) {
+                triggers.add(rs.getString(1));
+            }
+        }
+        for (String trigger : EXPECTED_TRIGGERS) {
+            if (!triggers.contains(trigger)) {
+                problems.add("trigger " + trigger + " is missing");
+            }
+        }
+
+        if (!problems.isEmpty()) {
+            throw new SQLException("The database schema does not match this version of the application:\n - "
+                    + String.join("\n - ", problems));
+        }
+    }
+
+    private static void apply(Connection conn, Script script) throws SQLException {
+        List<String> statements = split(script.text);
+        long start = System.nanoTime();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        int index = 0;
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                index++;
+                stmt.execute(sql);
+            }
+            record(conn, script, (int) ((System.nanoTime() - start) / 1_000_000));
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Migration " + script + " failed at statement " + index + " of " + statements.size()
+                    + ": " + e.getMessage(), e.getSQLState(), e);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static boolean alreadyApplied(Connection conn, Script script) throws SQLException {
+        String check = script.getAppliedIf();
+        if (check == null) {
+            return false;
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(check)) {
+            return rs.next();
+        }
+    }
+
+    private static void record(Connection conn, Script script, int executionMillis) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)")) {
+            stmt.setInt(1, script.version);
+            stmt.setString(2, script.description);
+            stmt.setString(3, script.checksum);
+            stmt.setInt(4, executionMillis);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void updateChecksum(Connection conn, Script script) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE schema_version SET checksum = ? WHERE version = ?")) {
+            stmt.setString(1, script.checksum);
+            stmt.setInt(2, script.version);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static Map<Integer, String> loadApplied(Connection conn) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        return applied;
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT 1 FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?")) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static void acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Another terminal has been migrating the database for over "
+                            + LOCK_TIMEOUT_SECONDS + " s; try again later");
+                }
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        }
+    }
+
+    /**
+     * Reads the scripts from the classpath, in order.
+     */
+    static List<Script> loadScripts() throws SQLException {
+        List<Script> scripts = new ArrayList<>();
+        for (String name : SCRIPTS) {
+            try (InputStream in = MigrationRunner.class.getResourceAsStream("/migrations/" + name)) {
+                if (in == null) {
+                    throw new SQLException("Migration script migrations/" + name + " is missing from the classpath");
+                }
+                scripts.add(new Script(name, new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new SQLException("Could not read migration script " + name + ": " + e.getMessage(), e);
+            }
+        }
+        return scripts;
+    }
+
+    /**
+     * Splits a script into statements at semicolons outside quotes and comments, dropping the comments.
+     */
+    static List<String> split(String text) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        char quote = 0;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                current.append(c);
+                if (c == '\\' && quote != '`' && i + 1 < text.length()) {
+                    current.append(text.charAt(++i));
+                } else if (c == quote) {
+                    quote = 0;
+                }
+                i++;
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+                current.append(c);
+                i++;
+            } else if (c == '#' || (text.startsWith("--", i) && (i + 2 == text.length() || Character.isWhitespace(text.charAt(i + 2))))) {
+                int end = text.indexOf('\n', i);
+                i = end < 0 ? text.length() : end;
+            } else if (text.startsWith("/*", i)) {
+                int end = text.indexOf("*/", i + 2);
+                i = end < 0 ? text.length() : end + 2;
+            } else if (c == ';') {
+                addStatement(statements, current);
+                i++;
+            } else {
+                current.append(c);
+                i++;
+            }
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String sql = current.toString().trim();
+        if (!sql.isEmpty()) {
+            statements.add(sql);
+        }
+        current.setLength(0);
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public static void main(String[] args) throws SQLException {
+        String command = args.length > 0 ? args[0] : "";
+        if (!command.equals("migrate") && !command.equals("validate") && !command.equals("status")) {
+            System.out.println("Usage: java MigrationRunner migrate|validate|status");
+            return;
+        }
+        try (Connection conn = new AuthenticationManager().connect()) {
+            if (command.equals("migrate")) {
+                List<Script> ran = migrate(conn);
+                System.out.println(ran.isEmpty() ? "The schema is up to date" : "Applied " + ran);
+                validate(conn);
+                System.out.println("The schema matches the application");
+            } else if (command.equals("validate")) {
+                validate(conn);
+                System.out.println("The schema matches the application");
+            } else {
+                Map<Integer, String> applied = tableExists(conn, "schema_version") ? loadApplied(conn) : new HashMap<>();
+                for (Script script : loadScripts()) {
+                    String state = !applied.containsKey(script.version) ? "pending"
+                            : script.matches(applied.get(script.version)) ? "applied" : "CHANGED after it was applied";
+                    System.out.println(script + ": " + state);
+                }
+            }
+        } finally {
+            AuthenticationManager.getPool().shutdown();
+        }
+    }
+}
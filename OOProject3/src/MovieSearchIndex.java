@@ -0,0 +1,227 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable in-memory search index over movie titles and genres.
+ *
+ * Titles are normalized (lower case, accents stripped, whitespace collapsed) and indexed by
+ * character trigrams for substring search and by word for prefix search, so search-as-you-type
+ * stays fast for tens of thousands of titles. Genres come from movie_genres and are kept in an
+ * inverted index, so a movie with several genres is found under each of them.
+ *
+ * Results are ranked: exact title, then title prefix, then word prefix, then any substring;
+ * ties are broken alphabetically.
+ */
+public final class MovieSearchIndex {
+
+    private static final int RANK_EXACT = 0;
+    private static final int RANK_TITLE_PREFIX = 1;
+    private static final int RANK_WORD_PREFIX = 2;
+    private static final int RANK_SUBSTRING = 3;
+
+    private final String[] titles;            // Display titles, by document id
+    private final String[] normalizedTitles;  // Normalized titles, by document id
+    private final Map<String, BitSet> trigrams = new HashMap<>();
+    private final String[] words;             // Sorted distinct normalized words
+    private final BitSet[] wordDocs;          // Documents containing words[i]
+    private final Map<String, BitSet> genreDocs = new HashMap<>();
+    private final List<String> genres;        // Display genre names, sorted
+
+    private MovieSearchIndex(List<String> titleList, List<Collection<String>> genreList) {
+        int size = titleList.size();
+        titles = titleList.toArray(new String[0]);
+        normalizedTitles = new String[size];
+
+        TreeMap<String, BitSet> wordIndex = new TreeMap<>();
+        Map<String, String> genreNames = new TreeMap<>();
+        for (int doc = 0; doc < size; doc++) {
+            String normalized = normalize(titles[doc]);
+            normalizedTitles[doc] = normalized;
+            for (int i = 0; i + 3 <= normalized.length(); i++) {
+                trigrams.computeIfAbsent(normalized.substring(i, i + 3), k -> new BitSet()).set(doc);
+            }
+            for (String word : normalized.split(" ")) {
+                if (!word.isEmpty()) {
+                    wordIndex.computeIfAbsent(word, k -> new BitSet()).set(doc);
+                }
+            }
+            for (String genre : genreList.get(doc)) {
+                String key = normalize(genre);
+                if (!key.isEmpty()) {
+                    genreDocs.computeIfAbsent(key, k -> new BitSet()).set(doc);
+                    genreNames.putIfAbsent(key, genre.trim());
+                }
+            }
+        }
+        words = wordIndex.keySet().toArray(new String[0]);
+        wordDocs = wordIndex.values().toArray(new BitSet[0]);
+        genres = Collections.unmodifiableList(new ArrayList<>(genreNames.values()));
+    }
+
+    /**
+     * Collects titles and genres, then builds the index in one go.
+     */
+    public static class Builder {
+        private final List<String> titles = new ArrayList<>();
+        private final List<Collection<String>> genres = new ArrayList<>();
+
+        /**
+         * Adds a movie.
+         *
+         * @param title the display title
+         * @param movieGenres every genre of the movie (may be empty)
+         */
+        public Builder add(String title, Collection<String> movieGenres) {
+            titles.add(title);
+            genres.add(movieGenres);
+            return this;
+        }
+
+        public MovieSearchIndex build() {
+            return new MovieSearchIndex(titles, genres);
+        }
+    }
+
+    /**
+     * Finds movies whose title contains the query and that have the given genre.
+     *
+     * @param query text typed by the cashier; empty matches every title
+     * @param genre a genre to filter by, or null for any
+     * @param limit maximum number of results
+     * @return matching display titles, best match first
+     */
+    public List<String> search(String query, String genre, int limit) {
+        String needle = normalize(query == null ? "" : query);
+        BitSet candidates = needle.isEmpty() ? all() : candidates(needle);
+
+        if (genre != null) {
+            BitSet genreMatches = genreDocs.get(normalize(genre));
+            if (genreMatches == null) {
+                return Collections.emptyList();
+            }
+            candidates.and(genreMatches);
+        }
+
+        List<int[]> ranked = new ArrayList<>(); // {rank, doc}
+        for (int doc = candidates.nextSetBit(0); doc >= 0; doc = candidates.nextSetBit(doc + 1)) {
+            int rank = rank(normalizedTitles[doc], needle);
+            if (rank >= 0) {
+                ranked.add(new int[]{rank, doc});
+            }
+        }
+        ranked.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0])
+                : normalizedTitles[a[1]].compareTo(normalizedTitles[b[1]]));
+
+        List<String> results = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            results.add(titles[ranked.get(i)[1]]);
+        }
+        return results;
+    }
+
+    /**
+     * Returns every genre in the index, sorted.
+     */
+    public List<String> getGenres() {
+        return genres;
+    }
+
+    public int size() {
+        return titles.length;
+    }
+
+    // Narrows the search to documents that can possibly contain the needle
+    private BitSet candidates(String needle) {
+        if (needle.length() >= 3) {
+            BitSet result = null;
+            for (int i = 0; i + 3 <= needle.length(); i++) {
+                BitSet docs = trigrams.get(needle.substring(i, i + 3));
+                if (docs == null) {
+                    return new BitSet();
+                }
+                if (result == null) {
+                    result = (BitSet) docs.clone();
+                } else {
+                    result.and(docs);
+                }
+            }
+            return result;
+        }
+        // One or two characters: words starting with them, found by binary search in the sorted word list
+        BitSet result = new BitSet();
+        int start = Arrays.binarySearch(words, needle);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        for (int i = start; i < words.length && words[i].startsWith(needle); i++) {
+            result.or(wordDocs[i]);
+        }
+        return result;
+    }
+
+    private BitSet all() {
+        BitSet result = new BitSet(titles.length);
+        result.set(0, titles.length);
+        return result;
+    }
+
+    // Lower is better; -1 if the title does not actually contain the needle
+    private static int rank(String title, String needle) {
+        if (needle.isEmpty()) {
+            return RANK_SUBSTRING;
+        }
+        if (title.equals(needle)) {
+            return RANK_EXACT;
+        }
+        if (title.startsWith(needle)) {
+            return RANK_TITLE_PREFIX;
+        }
+        int at = title.indexOf(needle);
+        if (at < 0) {
+            return -1;
+        }
+        // Also a word prefix if any occurrence starts right after a space
+        for (; at >= 0; at = title.indexOf(needle, at + 1)) {
+            if (title.charAt(at - 1) == ' ') {
+                return RANK_WORD_PREFIX;
+            }
+        }
+        return RANK_SUBSTRING;
+    }
+
+    /**
+     * Lower-cases, strips accents and punctuation, and collapses whitespace.
+     */
+    static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        boolean space = true; // Swallows leading spaces
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                sb.append(' ');
+                space = true;
+            }
+        }
+        int end = sb.length();
+        if (end > 0 && sb.charAt(end - 1) == ' ') {
+            sb.setLength(end - 1);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,237 @@
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads movie posters in the background, already scaled to the size they are shown at.
+ *
+ * Decoded images are kept in an LRU cache bounded by their total pixel bytes
+ * (cinema.posters.cacheBytes, 64 MB by default). Scaled thumbnails are also written to a
+ * disk cache (cinema.posters.diskCache, default ~/.group5cinema/posters; set it to "off" to
+ * disable), so a cold start reads small PNGs instead of decoding full-size posters again.
+ */
+public class PosterCache {
+
+    private static final PosterCache INSTANCE = new PosterCache(
+            Long.getLong("cinema.posters.cacheBytes", 64L * 1024 * 1024),
+            diskCacheDirectory());
+
+    private final long maxBytes;
+    private final Path diskDirectory;
+    private final ExecutorService loader;
+
+    // Access-ordered, so iteration starts at the least recently used poster
+    private final LinkedHashMap<String, Image> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes = 0;
+    private final Map<String, CompletableFuture<Image>> inFlight = new ConcurrentHashMap<>();
+
+    public PosterCache(long maxBytes, Path diskDirectory) {
+        this.maxBytes = maxBytes;
+        this.diskDirectory = diskDirectory;
+        AtomicInteger counter = new AtomicInteger();
+        this.loader = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "poster-loader-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Returns the poster cache shared by the cashier screens.
+     */
+    public static PosterCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the scaled poster if it is already in memory, so it can be shown without flicker.
+     *
+     * @return the image, or null if it still has to be loaded
+     */
+    public synchronized Image getIfPresent(String posterPath, double width, double height) {
+        return memory.get(key(posterPath, width, height));
+    }
+
+    /**
+     * Loads a poster scaled to fit the given box, from memory, the disk cache or the original file.
+     * Decoding happens on a background thread; apply the result with Platform.runLater.
+     *
+     * @param posterPath movies.poster_path: a URL, a classpath resource or a file path
+     * @param width display width in pixels
+     * @param height display height in pixels
+     * @return a future completed with the scaled image
+     */
+    public CompletableFuture<Image> load(String posterPath, double width, double height) {
+        String key = key(posterPath, width, height);
+        Image cached = getIfPresent(posterPath, width, height);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        // Several screens asking for the same poster share one decode
+        CompletableFuture<Image> future = new CompletableFuture<>();
+        CompletableFuture<Image> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        loader.execute(() -> {
+            try {
+                future.complete(decode(posterPath, width, height, key));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, future);
+            }
+        });
+        return future;
+    }
+
+    private Image decode(String posterPath, double width, double height, String key) {
+        Path thumbnail = diskDirectory == null ? null : diskDirectory.resolve(hash(key) + ".png");
+        Image image = null;
+        if (thumbnail != null && Files.isReadable(thumbnail)) {
+            image = new Image(thumbnail.toUri().toString());
+        }
+        if (image == null || image.isError()) {
+            String url = resolve(posterPath);
+            if (url == null) {
+                throw new IllegalArgumentException("Poster not found: " + posterPath);
+            }
+            // Decoding at the requested size means the full-resolution bitmap is never kept
+            image = new Image(url, width, height, true, true);
+            if (image.isError()) {
+                throw new IllegalStateException("Could not decode poster " + posterPath, image.getException());
+            }
+            if (thumbnail != null) {
+                writeThumbnail(image, thumbnail);
+            }
+        }
+        put(key, image);
+        return image;
+    }
+
+    private synchronized void put(String key, Image image) {
+        Image previous = memory.put(key, image);
+        if (previous != null) {
+            memoryBytes -= bytes(previous);
+        }
+        memoryBytes += bytes(image);
+        Iterator<Map.Entry<String, Image>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Image> entry = eldest.next();
+            if (entry.getKey().equals(key)) {
+                continue; // Never evict what was just loaded
+            }
+            memoryBytes -= bytes(entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Empties the in-memory cache. The disk cache is kept.
+     */
+    public synchronized void clear() {
+        memory.clear();
+        memoryBytes = 0;
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized int getMemoryCount() {
+        return memory.size();
+    }
+
+    // Four bytes per pixel once decoded
+    private static long bytes(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4;
+    }
+
+    private static String key(String posterPath, double width, double height) {
+        return posterPath + "@" + (int) width + "x" + (int) height;
+    }
+
+    private static String resolve(String posterPath) {
+        if (posterPath == null || posterPath.isEmpty()) {
+            return null;
+        }
+        if (posterPath.contains(":/") || posterPath.startsWith("file:")) {
+            return posterPath;
+        }
+        URL resource = PosterCache.class.getResource(posterPath.startsWith("/") ? posterPath : "/" + posterPath);
+        if (resource != null) {
+            return resource.toExternalForm();
+        }
+        File file = new File(posterPath);
+        return file.isFile() ? file.toURI().toString() : null;
+    }
+
+    // Best effort: a failed thumbnail write only costs a decode next time
+    private static void writeThumbnail(Image image, Path thumbnail) {
+        PixelReader pixels = image.getPixelReader();
+        if (pixels == null) {
+            return;
+        }
+        int w = (int) image.getWidth();
+        int h = (int) image.getHeight();
+        BufferedImage buffered = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                buffered.setRGB(x, y, pixels.getArgb(x, y));
+            }
+        }
+        try {
+            Files.createDirectories(thumbnail.getParent());
+            // Write to a temp file first so a concurrent reader never sees half a PNG
+            Path temp = Files.createTempFile(thumbnail.getParent(), "poster", ".tmp");
+            ImageIO.write(buffered, "png", temp.toFile());
+            Files.move(temp, thumbnail, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not cache poster thumbnail " + thumbnail + ": " + e.getMessage());
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path diskCacheDirectory() {
+        String configured = System.getProperty("cinema.posters.diskCache");
+        if ("off".equals(configured)) {
+            return null;
+        }
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".group5cinema", "posters");
+    }
+}
@@ -0,0 +1,150 @@
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An immutable, typed copy of the pricing rows of the config table.
+ *
+ * The current snapshot is loaded once and cached; price lookups on the sell path never touch
+ * the database. When a price update commits, a whole new snapshot is swapped in atomically,
+ * so a sale always sees either all old or all new values.
+ */
+public final class PricingSnapshot {
+
+    public static final String TICKET_BASE_PRICE = "ticket_base_price";
+    public static final String ABOVE_60_DISCOUNT_RATE = "above_60_discount_rate";
+    public static final String BELOW_18_DISCOUNT_RATE = "below_18_discount_rate";
+    public static final String TICKET_TAX_RATE = "ticket_tax_rate";
+    public static final String PRODUCT_TAX_RATE = "product_tax_rate";
+
+    private static final AtomicReference<PricingSnapshot> CURRENT = new AtomicReference<>();
+    private static final AuthenticationManager dbFacade = new AuthenticationManager();
+
+    private final long version;
+    private final BigDecimal ticketBasePrice;
+    private final BigDecimal above60DiscountRate;
+    private final BigDecimal below18DiscountRate;
+    private final BigDecimal ticketTaxRate;
+    private final BigDecimal productTaxRate;
+
+    public PricingSnapshot(long version, BigDecimal ticketBasePrice, BigDecimal above60DiscountRate,
+                           BigDecimal below18DiscountRate, BigDecimal ticketTaxRate, BigDecimal productTaxRate) {
+        this.version = version;
+        this.ticketBasePrice = ticketBasePrice;
+        this.above60DiscountRate = above60DiscountRate;
+        this.below18DiscountRate = below18DiscountRate;
+        this.ticketTaxRate = ticketTaxRate;
+        this.productTaxRate = productTaxRate;
+    }
+
+    /**
+     * Returns the cached snapshot, loading it from the database on first use.
+     *
+     * @throws SQLException if the snapshot has not been loaded yet and the config table cannot be read
+     */
+    public static PricingSnapshot current() throws SQLException {
+        PricingSnapshot snapshot = CURRENT.get();
+        if (snapshot == null) {
+            try (Connection conn = dbFacade.connect()) {
+                snapshot = reload(conn);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Same as {@link #current()}, but loads through a connection the caller already holds.
+     */
+    public static PricingSnapshot current(Connection conn) throws SQLException {
+        PricingSnapshot snapshot = CURRENT.get();
+        return snapshot != null ? snapshot : reload(conn);
+    }
+
+    /**
+     * Re-reads the config table and replaces the cached snapshot, unless a snapshot was
+     * published while the table was being read; that one is newer and is kept.
+     *
+     * @param conn an open database connection
+     * @return the snapshot now in use
+     */
+    public static PricingSnapshot reload(Connection conn) throws SQLException {
+        PricingSnapshot previous = CURRENT.get(); // Before the read, so a publish during it wins
+        Map<String, String> values = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT config_key, config_value FROM config")) {
+            while (rs.next()) {
+                values.put(rs.getString("config_key"), rs.getString("config_value"));
+            }
+        }
+        PricingSnapshot loaded = new PricingSnapshot(
+                previous == null ? 1 : previous.version + 1,
+                decimal(values, TICKET_BASE_PRICE),
+                decimal(values, ABOVE_60_DISCOUNT_RATE),
+                decimal(values, BELOW_18_DISCOUNT_RATE),
+                decimal(values, TICKET_TAX_RATE),
+                decimal(values, PRODUCT_TAX_RATE));
+        if (!CURRENT.compareAndSet(previous, loaded)) {
+            return CURRENT.get();
+        }
+        return loaded;
+    }
+
+    /**
+     * Swaps in a snapshot built from values that were just committed to the config table.
+     * Ignored if a newer snapshot has been published in the meantime.
+     *
+     * @param snapshot the new values
+     */
+    public static void publish(PricingSnapshot snapshot) {
+        CURRENT.accumulateAndGet(snapshot, (current, next) ->
+                current == null || next.version > current.version ? next : current);
+    }
+
+    private static BigDecimal decimal(Map<String, String> values, String key) throws SQLException {
+        String value = values.get(key);
+        if (value == null) {
+            throw new SQLException("Missing config value: " + key);
+        }
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            throw new SQLException("Config value " + key + " is not a number: " + value);
+        }
+    }
+
+    /**
+     * Returns a copy with new ticket price and discounts and the next version number.
+     */
+    public PricingSnapshot withTicketPricing(BigDecimal ticketBasePrice, BigDecimal above60DiscountRate,
+                                             BigDecimal below18DiscountRate) {
+        return new PricingSnapshot(version + 1, ticketBasePrice, above60DiscountRate, below18DiscountRate,
+                ticketTaxRate, productTaxRate);
+    }
+
+    /**
+     * Returns the age discount in percent for a customer, or 0 if none applies.
+     *
+     * @param age the customer's age in years
+     */
+    public BigDecimal discountRateForAge(int age) {
+        if (age > 60) {
+            return above60DiscountRate;
+        }
+        if (age < 18) {
+            return below18DiscountRate;
+        }
+        return BigDecimal.ZERO;
+    }
+
+    public long getVersion() { return version; }
+    public BigDecimal getTicketBasePrice() { return ticketBasePrice; }
+    public BigDecimal getAbove60DiscountRate() { return above60DiscountRate; }
+    public BigDecimal getBelow18DiscountRate() { return below18DiscountRate; }
+    public BigDecimal getTicketTaxRate() { return ticketTaxRate; }
+    public BigDecimal getProductTaxRate() { return productTaxRate; }
+}
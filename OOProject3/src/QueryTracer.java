@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Traces every statement execution that goes through {@link ConnectionPool}.
+ *
+ * Each execution is a Java Flight Recorder event (group5.Query) with the SQL, the number of bind
+ * values, the row count, the duration and the {@link UiAction} that caused it (or the thread
+ * name for background work). For a query the duration runs until its result set is closed, since
+ * reading the rows is part of what the screen waits for. JFR costs next to nothing while no
+ * recording is running; start one with e.g.
+ * {@code -XX:StartFlightRecording=filename=cinema.jfr} or from JDK Mission Control.
+ *
+ * Executions slower than cinema.slowQuery.thresholdMs (default 250, 0 turns it off) are also
+ * written to a rotating log: cinema.slowQuery.dir (default ~/.group5cinema/logs), five files of
+ * at most 5 MB each, slow-queries.0.log being the newest.
+ */
+public final class QueryTracer {
+
+    private static final long SLOW_NANOS = Long.getLong("cinema.slowQuery.thresholdMs", 250L) * 1_000_000L;
+    private static final int MAX_SQL_LENGTH = 4000;
+    private static final Logger SLOW_LOG = SLOW_NANOS > 0 ? createSlowLog() : null;
+
+    private QueryTracer() {
+    }
+
+    /**
+     * JFR event for one statement execution.
+     */
+    @Name("group5.Query")
+    @Label("JDBC Query")
+    @Category({"Group5", "Database"})
+    @Description("A statement execution, tagged with the UI action that triggered it")
+    @StackTrace(false)
+    @Threshold("0 ms")
+    static class QueryEvent extends Event {
+        @Label("UI Action")
+        String action;
+
+        @Label("SQL")
+        String sql;
+
+        @Label("Bind Count")
+        int bindCount;
+
+        @Label("Row Count")
+        @Description("Rows read or changed; -1 if unknown")
+        long rowCount;
+    }
+
+    /**
+     * One execution in progress. Not thread-safe; belongs to the statement that runs it.
+     */
+    static final class Execution {
+        private final QueryEvent event = new QueryEvent();
+        private final long start = System.nanoTime();
+        private final String sql;
+        private final String action;
+        private final Thread thread;
+        private final int bindCount;
+        private long rowCount = -1;
+        private boolean finished;
+
+        Execution(String sql, int bindCount) {
+            this.sql = sql;
+            this.bindCount = bindCount;
+            this.action = UiAction.current();
+            this.thread = Thread.currentThread();
+            event.begin();
+        }
+
+        void addRows(long rows) {
+            rowCount = rowCount < 0 ? rows : rowCount + rows;
+        }
+
+        /**
+         * Ends the execution; later calls do nothing.
+         */
+        void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            long nanos = System.nanoTime() - start;
+            event.end();
+            boolean slow = SLOW_LOG != null && nanos >= SLOW_NANOS;
+            String action = this.action;
+            if (action == null && (slow || event.shouldCommit())) {
+                action = "thread:" + thread.getName(); // Background work
+            }
+            if (event.shouldCommit()) {
+                event.action = action;
+                event.sql = truncate(sql);
+                event.bindCount = bindCount;
+                event.rowCount = rowCount;
+                event.commit();
+            }
+            if (slow) {
+                SLOW_LOG.log(Level.WARNING, String.format("%.1f ms | %s | binds=%d | rows=%d | %s",
+                        nanos / 1_000_000.0, action, bindCount, rowCount, truncate(sql).replaceAll("\\s+", " ")));
+            }
+        }
+    }
+
+    /**
+     * Starts timing a statement execution.
+     *
+     * @param sql the statement text; null is logged as "?"
+     * @param bindCount bind values set for this execution
+     */
+    static Execution start(String sql, int bindCount) {
+        return new Execution(sql == null ? "?" : sql, bindCount);
+    }
+
+    private static String truncate(String sql) {
+        return sql.length() <= MAX_SQL_LENGTH ? sql : sql.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+
+    private static Logger createSlowLog() {
+        Path dir = Paths.get(System.getProperty("cinema.slowQuery.dir",
+                Paths.get(System.getProperty("user.home"), ".group5cinema", "logs").toString()));
+        Logger logger = Logger.getLogger("group5.slowQueries");
+        logger.setUseParentHandlers(false); // Not on the console as well
+        try {
+            Files.createDirectories(dir);
+            FileHandler handler = new FileHandler(dir.resolve("slow-queries.%g.log").toString(), 5 * 1024 * 1024, 5, true);
+            handler.setFormatter(new LineFormatter());
+            logger.addHandler(handler);
+            return logger;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Slow query log disabled, cannot write to " + dir + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // "2024-05-10T19:42:03.120 812.4 ms | Cashier.checkout | binds=5 | rows=1 | INSERT ..."
+    private static class LineFormatter extends Formatter {
+        private static final DateTimeFormatter TIME = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+        @Override
+        public String format(LogRecord record) {
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(record.getMillis()), ZoneId.systemDefault());
+            return time.format(TIME) + " " + record.getMessage() + System.lineSeparator();
+        }
+    }
+}
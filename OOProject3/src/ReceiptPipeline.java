@@ -0,0 +1,396 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders HTML receipts in the background and records their location in sales.invoice_path.
+ *
+ * Checkout only calls {@link #enqueue}. A bounded pool (cinema.receipts.workers threads, default 2,
+ * with a queue of cinema.receipts.queueSize jobs, default 1000) reads the sale, streams the receipt
+ * to a temporary file in a date-sharded store (cinema.receipts.dir, default
+ * ~/.group5cinema/receipts, laid out as yyyy/MM/dd/sale-ID.html), moves it into place and
+ * back-fills invoice_path. When the queue is full the job is dropped, not run at the counter;
+ * {@link #enqueueMissing} picks such sales up again later.
+ */
+public class ReceiptPipeline {
+
+    private static final DateTimeFormatter SHARD = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+    private static final DateTimeFormatter PRINTED = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+    private static final int BACKFILL_BATCH = 500; // Sale ids read per query by backfill
+
+    private static final Metrics.Histogram RENDER_TIME = Metrics.histogram("receipts.render");
+    private static final Metrics.Histogram QUEUE_WAIT = Metrics.histogram("receipts.queueWait");
+    private static final Metrics.Counter ENQUEUED = Metrics.counter("receipts.enqueued");
+    private static final Metrics.Counter RENDERED = Metrics.counter("receipts.rendered");
+    private static final Metrics.Counter FAILED = Metrics.counter("receipts.failed");
+    private static final Metrics.Counter DROPPED = Metrics.counter("receipts.dropped");
+
+    private static final ReceiptPipeline INSTANCE = new ReceiptPipeline(
+            receiptDirectory(),
+            Integer.getInteger("cinema.receipts.workers", 2),
+            Integer.getInteger("cinema.receipts.queueSize", 1000));
+
+    private final AuthenticationManager dbFacade = new AuthenticationManager();
+    private final Path root;
+    private final ThreadPoolExecutor workers;
+
+    public ReceiptPipeline(Path root, int workerCount, int queueSize) {
+        this.root = root;
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "receipt-renderer-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Returns the pipeline shared by the cashier screens.
+     */
+    public static ReceiptPipeline getInstance() {
+        return INSTANCE;
+    }
+
+    static {
+        Metrics.gauge("receipts.queued", INSTANCE::getQueueDepth);
+    }
+
+    /**
+     * Queues a committed sale for rendering. Returns immediately.
+     *
+     * @return false if the queue is full; the sale keeps a null invoice_path until {@link #enqueueMissing}
+     */
+    public boolean enqueue(int saleId) {
+        long queuedAt = System.nanoTime();
+        try {
+            workers.execute(() -> render(saleId, queuedAt));
+            ENQUEUED.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            DROPPED.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Queues the most recent sales that have no receipt yet, e.g. after a restart or a full queue.
+     *
+     * @param conn an open connection
+     * @param limit the maximum number of sales to queue
+     * @return the number of sales queued
+     */
+    public int enqueueMissing(Connection conn, int limit) throws SQLException {
+        List<Integer> saleIds = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT sale_id FROM sales WHERE invoice_path IS NULL ORDER BY sale_id DESC LIMIT ?")) {
+            stmt.setInt(1, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    saleIds.add(rs.getInt(1));
+                }
+            }
+        }
+        int queued = 0;
+        for (int saleId : saleIds) {
+            if (enqueue(saleId)) {
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Queues every sale that has no receipt yet, oldest first, a batch at a time, waiting for room
+     * in the queue instead of dropping jobs. For the backfill tool; sales whose receipt fails to
+     * render are not retried within the same run.
+     *
+     * @param conn an open connection
+     * @return the number of sales queued
+     */
+    public int backfill(Connection conn) throws SQLException, InterruptedException {
+        int queued = 0;
+        int after = 0;
+        while (true) {
+            List<Integer> saleIds = new ArrayList<>();
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT sale_id FROM sales WHERE invoice_path IS NULL AND sale_id > ? ORDER BY sale_id LIMIT ?")) {
+                stmt.setInt(1, after);
+                stmt.setInt(2, BACKFILL_BATCH);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        saleIds.add(rs.getInt(1));
+                    }
+                }
+            }
+            if (saleIds.isEmpty()) {
+                return queued;
+            }
+            for (int saleId : saleIds) {
+                while (workers.getQueue().remainingCapacity() == 0) {
+                    Thread.sleep(20); // Renderers are behind; wait rather than drop
+                }
+                if (!enqueue(saleId)) {
+                    throw new IllegalStateException("Receipt queue rejected sale " + saleId);
+                }
+                queued++;
+            }
+            after = saleIds.get(saleIds.size() - 1);
+        }
+    }
+
+    /**
+     * Stops accepting jobs and waits up to the timeout for queued receipts to finish.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void render(int saleId, long queuedAt) {
+        long start = System.nanoTime();
+        QUEUE_WAIT.record(start - queuedAt);
+        try (Connection conn = dbFacade.connect()) {
+            Receipt receipt = Receipt.load(conn, saleId);
+            Path file = write(receipt);
+            String path = root.relativize(file).toString().replace('\\', '/');
+            if (setInvoicePath(conn, "sales", saleId, path) == 0) {
+                setInvoicePath(conn, "sales_archive", saleId, path); // Archived meanwhile (or a reprint)
+            }
+            RENDERED.increment();
+        } catch (SQLException | IOException | RuntimeException e) {
+            FAILED.increment();
+            System.err.println("Could not render receipt for sale " + saleId + ": " + e.getMessage());
+        } finally {
+            RENDER_TIME.recordSince(start);
+        }
+    }
+
+    private static int setInvoicePath(Connection conn, String table, int saleId, String path) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE " + table + " SET invoice_path = ? WHERE sale_id = ?")) {
+            stmt.setString(1, path);
+            stmt.setInt(2, saleId);
+            return stmt.executeUpdate();
+        }
+    }
+
+    // Streams to a temp file in the shard, then moves it into place so readers never see half a receipt
+    private Path write(Receipt receipt) throws IOException {
+        Path directory = root.resolve(receipt.saleDate.format(SHARD));
+        Files.createDirectories(directory);
+        Path target = directory.resolve("sale-" + receipt.saleId + ".html");
+        Path temp = Files.createTempFile(directory, "sale-" + receipt.saleId, ".tmp");
+        try {
+            try (Writer out = new BufferedWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8))) {
+                receipt.writeHtml(out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return target;
+    }
+
+    // Metrics accessors
+
+    public int getQueueDepth() { return workers.getQueue().size(); }
+    public int getActiveRenders() { return workers.getActiveCount(); }
+    public long getEnqueuedCount() { return ENQUEUED.getCount(); }
+    public long getRenderedCount() { return RENDERED.getCount(); }
+    public long getFailedCount() { return FAILED.getCount(); }
+    public long getDroppedCount() { return DROPPED.getCount(); }
+
+    @Override
+    public String toString() {
+        return String.format("ReceiptPipeline[queued=%d, active=%d, rendered=%d, failed=%d, dropped=%d, render=%s, queueWait=%s]",
+                getQueueDepth(), getActiveRenders(), getRenderedCount(), getFailedCount(), getDroppedCount(),
+                RENDER_TIME, QUEUE_WAIT);
+    }
+
+    private static Path receiptDirectory() {
+        String configured = System.getProperty("cinema.receipts.dir");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".group5cinema", "receipts");
+    }
+
+    // Everything printed on one receipt, read in three queries
+    private static class Receipt {
+        private int saleId;
+        private LocalDateTime saleDate;
+        private String cashier;
+        private String customer;
+        private BigDecimal total;
+        private BigDecimal tax;
+        private BigDecimal ticketTaxRate;  // As charged; null on sales from before they were stored
+        private BigDecimal productTaxRate;
+        private final List<String[]> tickets = new ArrayList<>();  // movie, hall, show time, seat, base, discount %, net
+        private final List<String[]> products = new ArrayList<>(); // name, quantity, unit price, line total
+        private BigDecimal ticketNet = BigDecimal.ZERO;
+        private BigDecimal productNet = BigDecimal.ZERO;
+
+        static Receipt load(Connection conn, int saleId) throws SQLException {
+            Receipt receipt = new Receipt();
+            receipt.saleId = saleId;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT s.sale_date, s.total_amount, s.tax_amount, s.ticket_tax_rate, s.product_tax_rate, "
+                            + "u.username, c.first_name, c.last_name "
+                            + "FROM sales_all s LEFT JOIN users u ON s.cashier_id = u.user_id "
+                            + "LEFT JOIN customers c ON s.customer_id = c.customer_id WHERE s.sale_id = ?")) {
+                stmt.setInt(1, saleId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Sale " + saleId + " does not exist");
+                    }
+                    Timestamp date = rs.getTimestamp("sale_date");
+                    receipt.saleDate = date == null ? LocalDateTime.now() : date.toLocalDateTime();
+                    receipt.total = rs.getBigDecimal("total_amount");
+                    receipt.tax = rs.getBigDecimal("tax_amount");
+                    receipt.ticketTaxRate = rs.getBigDecimal("ticket_tax_rate");
+                    receipt.productTaxRate = rs.getBigDecimal("product_tax_rate");
+                    receipt.cashier = rs.getString("username");
+                    receipt.customer = rs.getString("first_name") == null ? null
+                            : rs.getString("first_name") + " " + rs.getString("last_name");
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT m.title, h.name AS hall, sc.schedule_date, se.start_time, t.seat_number, t.base_price, t.discount_applied "
+                            + "FROM tickets_all t JOIN schedule sc ON t.schedule_id = sc.schedule_id "
+                            + "JOIN movies m ON sc.movie_id = m.movie_id JOIN halls h ON sc.hall_id = h.hall_id "
+                            + "JOIN sessions se ON sc.session_id = se.session_id "
+                            + "WHERE t.sale_id = ? ORDER BY t.ticket_id")) {
+                stmt.setInt(1, saleId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        BigDecimal base = rs.getBigDecimal("base_price");
+                        BigDecimal discount = rs.getBigDecimal("discount_applied");
+                        BigDecimal net = base.multiply(HUNDRED.subtract(discount)).divide(HUNDRED, 2, RoundingMode.HALF_UP);
+                        receipt.ticketNet = receipt.ticketNet.add(net);
+                        receipt.tickets.add(new String[]{rs.getString("title"), rs.getString("hall"),
+                                rs.getDate("schedule_date") + " " + rs.getTime("start_time").toString().substring(0, 5),
+                                rs.getString("seat_number"), base.toPlainString(), discount.stripTrailingZeros().toPlainString(),
+                                net.toPlainString()});
+                    }
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT p.name, si.quantity, si.unit_price FROM sale_items_all si "
+                            + "JOIN products p ON si.product_id = p.product_id WHERE si.sale_id = ? ORDER BY p.name")) {
+                stmt.setInt(1, saleId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        BigDecimal unit = rs.getBigDecimal("unit_price");
+                        BigDecimal line = unit.multiply(BigDecimal.valueOf(rs.getInt("quantity")));
+                        receipt.productNet = receipt.productNet.add(line);
+                        receipt.products.add(new String[]{rs.getString("name"), String.valueOf(rs.getInt("quantity")),
+                                unit.toPlainString(), line.toPlainString()});
+                    }
+                }
+            }
+            return receipt;
+        }
+
+        void writeHtml(Writer out) throws IOException {
+            // The stored tax is split in proportion to each side's net amount times the rate charged,
+            // so the two lines always add up to what was charged
+            BigDecimal ticketRate = ticketTaxRate;
+            BigDecimal productRate = productTaxRate;
+            if (ticketRate == null || productRate == null) {
+                try {
+                    PricingSnapshot pricing = PricingSnapshot.current(); // Older sale; the best guess left
+                    ticketRate = pricing.getTicketTaxRate();
+                    productRate = pricing.getProductTaxRate();
+                } catch (SQLException e) {
+                    throw new IOException("Could not read tax rates", e);
+                }
+            }
+            BigDecimal ticketWeight = ticketNet.multiply(ticketRate);
+            BigDecimal weight = ticketWeight.add(productNet.multiply(productRate));
+            BigDecimal ticketTax = weight.signum() == 0 ? BigDecimal.ZERO
+                    : tax.multiply(ticketWeight).divide(weight, 2, RoundingMode.HALF_UP);
+            BigDecimal productTax = tax.subtract(ticketTax);
+
+            out.write("<!DOCTYPE html>\n<html><head><meta charset=\"UTF-8\"><title>Receipt #" + saleId + "</title></head><body>\n");
+            out.write("<h1>Group5 CinemaCenter</h1>\n");
+            out.write("<p>Receipt #" + saleId + "<br>" + saleDate.format(PRINTED)
+                    + "<br>Cashier: " + escape(cashier == null ? "-" : cashier)
+                    + (customer == null ? "" : "<br>Customer: " + escape(customer)) + "</p>\n");
+            if (!tickets.isEmpty()) {
+                out.write("<h2>Tickets</h2>\n<table>\n<tr><th>Movie</th><th>Hall</th><th>Show</th><th>Seat</th>"
+                        + "<th>Price</th><th>Discount %</th><th>Net</th></tr>\n");
+                for (String[] row : tickets) {
+                    writeRow(out, row);
+                }
+                out.write("</table>\n");
+            }
+            if (!products.isEmpty()) {
+                out.write("<h2>Products</h2>\n<table>\n<tr><th>Product</th><th>Qty</th><th>Unit price</th><th>Total</th></tr>\n");
+                for (String[] row : products) {
+                    writeRow(out, row);
+                }
+                out.write("</table>\n");
+            }
+            out.write("<h2>Summary</h2>\n<table>\n");
+            writeRow(out, new String[]{"Tickets (net)", ticketNet.toPlainString()});
+            writeRow(out, new String[]{"Products (net)", productNet.toPlainString()});
+            writeRow(out, new String[]{"Ticket tax (" + ticketRate.stripTrailingZeros().toPlainString() + "%)", ticketTax.toPlainString()});
+            writeRow(out, new String[]{"Product tax (" + productRate.stripTrailingZeros().toPlainString() + "%)", productTax.toPlainString()});
+            writeRow(out, new String[]{"Total", total.toPlainString() + " TL"});
+            out.write("</table>\n</body></html>\n");
+        }
+
+        private static void writeRow(Writer out, String[] cells) throws IOException {
+            out.write("<tr>");
+            for (String cell : cells) {
+                out.write("<td>" + escape(cell) + "</td>");
+            }
+            out.write("</tr>\n");
+        }
+
+        private static String escape(String text) {
+            return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+        }
+    }
+
+    public static void main(String[] args) throws SQLException, InterruptedException {
+        if (args.length != 1 || !args[0].equals("backfill")) {
+            System.out.println("Usage: java ReceiptPipeline backfill");
+            return;
+        }
+        ReceiptPipeline pipeline = getInstance();
+        try (Connection conn = new AuthenticationManager().connect()) {
+            int queued = pipeline.backfill(conn);
+            System.out.println("Queued " + queued + " receipt(s)");
+        }
+        pipeline.shutdown(1, TimeUnit.HOURS);
+        System.out.println(pipeline);
+        AuthenticationManager.getPool().shutdown();
+    }
+}
@@ -0,0 +1,185 @@
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+/**
+ * Pre-aggregated revenue and tax per day and per month.
+ *
+ * {@link CheckoutWriter} adds every sale to today's and this month's bucket inside the sale's
+ * own transaction, so the Revenue tab reads a handful of rows instead of scanning all of sales.
+ * {@link #rebuild} recomputes every bucket from sales, tickets and sale_items, archived ones included;
+ * {@link MigrationRunner} runs it once when it creates the rollup tables.
+ *
+ * Usage: java RevenueRollup rebuild
+ */
+public class RevenueRollup {
+
+    private static final String ADD_DAILY =
+            "INSERT INTO revenue_daily (sale_day, sale_count, revenue, ticket_tax, product_tax) VALUES (COALESCE(?, CURDATE()), 1, ?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE sale_count = sale_count + 1, revenue = revenue + ?, "
+                    + "ticket_tax = ticket_tax + ?, product_tax = product_tax + ?";
+
+    private static final String ADD_MONTHLY =
+            "INSERT INTO revenue_monthly (sale_month, sale_count, revenue, ticket_tax, product_tax) "
+                    + "VALUES (DATE_FORMAT(COALESCE(?, CURDATE()), '%Y-%m-01'), 1, ?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE sale_count = sale_count + 1, revenue = revenue + ?, "
+                    + "ticket_tax = ticket_tax + ?, product_tax = product_tax + ?";
+
+    // sales.tax_amount is split between tickets and products in proportion to each side's net
+    // amount times the tax rate charged on the sale (the current rates for sales from before those
+    // were stored), so the rebuilt buckets add up to the stored tax exactly
+    private static final String REBUILD_DAILY =
+            "INSERT INTO revenue_daily (sale_day, sale_count, revenue, ticket_tax, product_tax) "
+                    + "SELECT x.sale_day, COUNT(*), SUM(x.total_amount), SUM(x.ticket_tax), SUM(x.tax_amount - x.ticket_tax) "
+                    + "FROM (SELECT w.sale_day, w.total_amount, w.tax_amount, "
+                    + "      COALESCE(ROUND(w.tax_amount * w.ticket_weight / NULLIF(w.ticket_weight + w.product_weight, 0), 2), 0) AS ticket_tax "
+                    + "      FROM (SELECT DATE(s.sale_date) AS sale_day, s.total_amount, s.tax_amount, "
+                    + "            COALESCE(t.net, 0) * COALESCE(s.ticket_tax_rate, ?) AS ticket_weight, "
+                    + "            COALESCE(p.net, 0) * COALESCE(s.product_tax_rate, ?) AS product_weight "
+                    + "            FROM sales_all s "
+                    + "            LEFT JOIN (SELECT sale_id, SUM(base_price * (100 - discount_applied) / 100) AS net "
+                    + "                       FROM tickets_all GROUP BY sale_id) t ON t.sale_id = s.sale_id "
+                    + "            LEFT JOIN (SELECT sale_id, SUM(quantity * unit_price) AS net "
+                    + "                       FROM sale_items_all GROUP BY sale_id) p ON p.sale_id = s.sale_id) w) x "
+                    + "GROUP BY x.sale_day";
+
+    private static final String REBUILD_MONTHLY =
+            "INSERT INTO revenue_monthly (sale_month, sale_count, revenue, ticket_tax, product_tax) "
+                    + "SELECT DATE_FORMAT(sale_day, '%Y-%m-01'), SUM(sale_count), SUM(revenue), SUM(ticket_tax), SUM(product_tax) "
+                    + "FROM revenue_daily GROUP BY DATE_FORMAT(sale_day, '%Y-%m-01')";
+
+    private RevenueRollup() {
+    }
+
+    /**
+     * Revenue and tax summed over some range of buckets.
+     */
+    public static class Totals {
+        private final long saleCount;
+        private final BigDecimal revenue;
+        private final BigDecimal ticketTax;
+        private final BigDecimal productTax;
+
+        public Totals(long saleCount, BigDecimal revenue, BigDecimal ticketTax, BigDecimal productTax) {
+            this.saleCount = saleCount;
+            this.revenue = revenue;
+            this.ticketTax = ticketTax;
+            this.productTax = productTax;
+        }
+
+        public long getSaleCount() { return saleCount; }
+        public BigDecimal getRevenue() { return revenue; }
+        public BigDecimal getTicketTax() { return ticketTax; }
+        public BigDecimal getProductTax() { return productTax; }
+        public BigDecimal getTotalTax() { return ticketTax.add(productTax); }
+    }
+
+    /**
+     * Adds one sale to today's and this month's bucket. Call inside the sale's transaction.
+     *
+     * @param conn the connection the sale is being written on
+     * @param revenue total amount of the sale, tax included
+     * @param ticketTax tax on the sale's tickets
+     * @param productTax tax on the sale's products
+     */
+    public static void record(Connection conn, BigDecimal revenue, BigDecimal ticketTax, BigDecimal productTax) throws SQLException {
+        record(conn, null, revenue, ticketTax, productTax);
+    }
+
+    /**
+     * Adds one sale to the buckets of the day it was made, e.g. a sale journaled while the
+     * database was unreachable (see {@link SalesJournal}). Call inside the sale's transaction.
+     *
+     * @param day the sale's day; null for today
+     */
+    public static void record(Connection conn, LocalDate day, BigDecimal revenue, BigDecimal ticketTax,
+                              BigDecimal productTax) throws SQLException {
+        for (String sql : new String[]{ADD_DAILY, ADD_MONTHLY}) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setObject(1, day);
+                stmt.setBigDecimal(2, revenue);
+                stmt.setBigDecimal(3, ticketTax);
+                stmt.setBigDecimal(4, productTax);
+                stmt.setBigDecimal(5, revenue);
+                stmt.setBigDecimal(6, ticketTax);
+                stmt.setBigDecimal(7, productTax);
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Sums every monthly bucket, i.e. all-time totals.
+     *
+     * @param conn an open database connection
+     */
+    public static Totals loadAllTime(Connection conn) throws SQLException {
+        return sum(conn, "SELECT COALESCE(SUM(sale_count), 0), COALESCE(SUM(revenue), 0), "
+                + "COALESCE(SUM(ticket_tax), 0), COALESCE(SUM(product_tax), 0) FROM revenue_monthly");
+    }
+
+    /**
+     * Totals of the current month's bucket.
+     *
+     * @param conn an open database connection
+     */
+    public static Totals loadCurrentMonth(Connection conn) throws SQLException {
+        return sum(conn, "SELECT COALESCE(SUM(sale_count), 0), COALESCE(SUM(revenue), 0), "
+                + "COALESCE(SUM(ticket_tax), 0), COALESCE(SUM(product_tax), 0) FROM revenue_monthly "
+                + "WHERE sale_month = DATE_FORMAT(CURDATE(), '%Y-%m-01')");
+    }
+
+    private static Totals sum(Connection conn, String query) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            rs.next();
+            return new Totals(rs.getLong(1), rs.getBigDecimal(2), rs.getBigDecimal(3), rs.getBigDecimal(4));
+        }
+    }
+
+    /**
+     * Recomputes every daily and monthly bucket from the sales history, in one transaction.
+     *
+     * @param conn an open database connection; its auto-commit mode is restored afterwards
+     */
+    public static void rebuild(Connection conn) throws SQLException {
+        PricingSnapshot pricing = PricingSnapshot.current(conn);
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM revenue_monthly");
+            stmt.executeUpdate("DELETE FROM revenue_daily");
+            try (PreparedStatement daily = conn.prepareStatement(REBUILD_DAILY)) {
+                daily.setBigDecimal(1, pricing.getTicketTaxRate());
+                daily.setBigDecimal(2, pricing.getProductTaxRate());
+                daily.executeUpdate();
+            }
+            stmt.executeUpdate(REBUILD_MONTHLY);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length != 1 || !args[0].equals("rebuild")) {
+            System.out.println("Usage: java RevenueRollup rebuild");
+            return;
+        }
+        try (Connection conn = new AuthenticationManager().connect()) {
+            rebuild(conn);
+            Totals totals = loadAllTime(conn);
+            System.out.printf("Rebuilt revenue rollups: %d sales, %s TL revenue, %s TL tax%n",
+                    totals.getSaleCount(), totals.getRevenue(), totals.getTotalTax());
+        } finally {
+            AuthenticationManager.getPool().shutdown();
+        }
+    }
+}
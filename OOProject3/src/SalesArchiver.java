@@ -0,0 +1,218 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves sales of closed months, with their tickets and sale items, from the hot tables to the
+ * *_archive tables, so the tables the selling path reads stay the size of a month or two.
+ *
+ * A sale is archived once its month is before the cutoff (the first day of the current month,
+ * or earlier with cinema.archive.hotMonths above 1) and none of its tickets is for a show on or
+ * after the cutoff; a ticket sold in March for an April show stays hot until May. Each batch
+ * (cinema.archive.batchSize sales, default 1000) is copied and deleted in one transaction, so a
+ * sale is always in exactly one place and the sales_all, tickets_all and sale_items_all views
+ * never miss or double count it.
+ *
+ * Every terminal schedules the job shortly after start and at each month start; a named lock
+ * lets only one of them work at a time.
+ *
+ * Usage: java SalesArchiver run
+ */
+public class SalesArchiver {
+
+    private static final String LOCK_NAME = "group5.archive";
+    private static final long START_DELAY_SECONDS = 60;
+    private static final Metrics.Counter ARCHIVED = Metrics.counter("archive.sales");
+
+    private static final String FIND_CLOSED =
+            "SELECT s.sale_id FROM sales s WHERE s.sale_date < ? AND NOT EXISTS "
+                    + "(SELECT 1 FROM tickets t JOIN schedule sc ON t.schedule_id = sc.schedule_id "
+                    + "WHERE t.sale_id = s.sale_id AND sc.schedule_date >= ?) "
+                    + "ORDER BY s.sale_id LIMIT ?";
+
+    private static final SalesArchiver INSTANCE = new SalesArchiver(
+            Integer.getInteger("cinema.archive.hotMonths", 1),
+            Integer.getInteger("cinema.archive.batchSize", 1000));
+
+    private final AuthenticationManager dbFacade = new AuthenticationManager();
+    private final int hotMonths;
+    private final int batchSize;
+    private ScheduledExecutorService scheduler;
+
+    SalesArchiver(int hotMonths, int batchSize) {
+        this.hotMonths = Math.max(1, hotMonths);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the archiver shared by the whole application.
+     */
+    public static SalesArchiver getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Schedules a catch-up run shortly after start, then one at every month start. Does nothing
+     * if already running.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sales-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.schedule(this::runAndReschedule, START_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the job; a batch in progress is rolled back by the database.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Returns the first day that is still hot. Sales before it can be archived.
+     */
+    public LocalDate getCutoff() {
+        return LocalDate.now().withDayOfMonth(1).minusMonths(hotMonths - 1);
+    }
+
+    /**
+     * Archives every closed sale, one batch per transaction.
+     *
+     * @param conn an open connection; its auto-commit mode is restored afterwards
+     * @return the number of sales moved, or -1 if another terminal is archiving
+     */
+    public int archive(Connection conn) throws SQLException {
+        if (!tryLock(conn)) {
+            return -1;
+        }
+        try {
+            LocalDate cutoff = getCutoff();
+            int moved = 0;
+            List<Integer> batch;
+            do {
+                batch = findClosed(conn, cutoff);
+                if (!batch.isEmpty()) {
+                    moveBatch(conn, batch);
+                    moved += batch.size();
+                    ARCHIVED.add(batch.size());
+                }
+            } while (batch.size() == batchSize && !Thread.currentThread().isInterrupted());
+            return moved;
+        } finally {
+            unlock(conn);
+        }
+    }
+
+    private void runAndReschedule() {
+        try (Connection conn = dbFacade.connect()) {
+            archive(conn); // Counted in the archive.sales metric
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Sales archiving failed, will retry next month: " + e.getMessage());
+        }
+        synchronized (this) {
+            if (scheduler != null) {
+                // A few minutes into the month, after the last sales of the old one have committed
+                LocalDateTime next = LocalDate.now().withDayOfMonth(1).plusMonths(1).atTime(0, 5);
+                long delay = Duration.between(LocalDateTime.now(), next).getSeconds();
+                scheduler.schedule(this::runAndReschedule, Math.max(delay, START_DELAY_SECONDS), TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private List<Integer> findClosed(Connection conn, LocalDate cutoff) throws SQLException {
+        List<Integer> saleIds = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(FIND_CLOSED)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(cutoff.atStartOfDay()));
+            stmt.setObject(2, cutoff);
+            stmt.setInt(3, batchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    saleIds.add(rs.getInt(1));
+                }
+            }
+        }
+        return saleIds;
+    }
+
+    // Copy, then delete children before their sale, all in one transaction
+    private static void moveBatch(Connection conn, List<Integer> saleIds) throws SQLException {
+        String in = " WHERE sale_id IN (" + String.join(", ", Collections.nCopies(saleIds.size(), "?")) + ")";
+        String[] statements = {
+                "INSERT INTO sales_archive SELECT * FROM sales" + in,
+                "INSERT INTO tickets_archive SELECT * FROM tickets" + in,
+                "INSERT INTO sale_items_archive SELECT * FROM sale_items" + in,
+                "DELETE FROM sale_items" + in,
+                "DELETE FROM tickets" + in,
+                "DELETE FROM sales" + in,
+        };
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (String sql : statements) {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < saleIds.size(); i++) {
+                        stmt.setInt(i + 1, saleIds.get(i));
+                    }
+                    stmt.executeUpdate();
+                }
+            }
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static boolean tryLock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            stmt.setString(1, LOCK_NAME);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void unlock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        }
+    }
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length != 1 || !args[0].equals("run")) {
+            System.out.println("Usage: java SalesArchiver run");
+            return;
+        }
+        SalesArchiver archiver = getInstance();
+        try (Connection conn = new AuthenticationManager().connect()) {
+            int moved = archiver.archive(conn);
+            System.out.println(moved < 0 ? "Another terminal is archiving; try again later"
+                    : "Archived " + moved + " sale(s) before " + archiver.getCutoff());
+        } finally {
+            AuthenticationManager.getPool().shutdown();
+        }
+    }
+}
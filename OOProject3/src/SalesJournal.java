@@ -0,0 +1,530 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Savepoint;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps selling while the database is unreachable.
+ *
+ * A sale that cannot be written is appended to a local journal file (cinema.journal.dir, default
+ * ~/.group5cinema/journal/sales.journal) and fsynced before the cashier is told it went through,
+ * so a confirmed sale survives a crash or power cut. Seats are already marked sold in
+ * {@link SeatAvailability}, and prices come from the cached {@link PricingSnapshot}.
+ *
+ * A background thread tries every cinema.journal.replayMs (default 5000 ms) to drain the journal
+ * into sales, tickets and sale_items, cinema.journal.batchSize entries (default 50) per
+ * transaction with a savepoint per entry. Each sale keeps its original time and tax rates. Every
+ * replayed entry is recorded in journal_replays inside the same transaction, so replaying one
+ * twice, e.g. after a crash before the journal was updated, never sells it twice.
+ *
+ * A seat sold by another terminal in the meantime is a conflict: that entry is not written, it
+ * is copied to conflicts.journal next to the journal and reported to the listeners, so a manager
+ * can settle it with the customer.
+ *
+ * The journal is append-only: written and rejected entries are marked by appending D and C
+ * records, and the file is emptied once nothing is pending. Each line ends in a CRC32, so a line
+ * torn by a crash is recognised and skipped.
+ */
+public class SalesJournal {
+
+    private static final String JOURNAL_FILE = "sales.journal";
+    private static final String CONFLICTS_FILE = "conflicts.journal";
+
+    private static final String INSERT_REPLAY = "INSERT INTO journal_replays (entry_id, sale_id) VALUES (?, ?)";
+
+    private static final SalesJournal INSTANCE = new SalesJournal(
+            journalDirectory(),
+            Long.getLong("cinema.journal.replayMs", 5000L),
+            Integer.getInteger("cinema.journal.batchSize", 50));
+
+    private static final Metrics.Counter REPLAYED = Metrics.counter("journal.replayed");
+    private static final Metrics.Counter CONFLICTS = Metrics.counter("journal.conflicts");
+
+    static {
+        Metrics.gauge("journal.pending", INSTANCE::getPendingCount);
+    }
+
+    private final AuthenticationManager dbFacade = new AuthenticationManager();
+    private final Path directory;
+    private final long replayMillis;
+    private final int batchSize;
+    private final List<Consumer<Conflict>> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by this
+    private FileChannel channel;
+    private final Map<String, Entry> pending = new LinkedHashMap<>(); // In the order they were sold
+    private ScheduledExecutorService replayer;
+
+    SalesJournal(Path directory, long replayMillis, int batchSize) {
+        this.directory = directory;
+        this.replayMillis = replayMillis;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the journal of this terminal.
+     */
+    public static SalesJournal getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * A journaled sale that could not be written.
+     */
+    public static class Conflict {
+        private final String entryId;
+        private final LocalDateTime soldAt;
+        private final int scheduleId;
+        private final String seatNumber;
+        private final String reason;
+
+        Conflict(String entryId, LocalDateTime soldAt, int scheduleId, String seatNumber, String reason) {
+            this.entryId = entryId;
+            this.soldAt = soldAt;
+            this.scheduleId = scheduleId;
+            this.seatNumber = seatNumber;
+            this.reason = reason;
+        }
+
+        public String getEntryId() { return entryId; }
+        public LocalDateTime getSoldAt() { return soldAt; }
+        /** The schedule of the double-sold seat, or 0 if the sale was rejected for another reason. */
+        public int getScheduleId() { return scheduleId; }
+        /** The double-sold seat, or null if the sale was rejected for another reason. */
+        public String getSeatNumber() { return seatNumber; }
+        public String getReason() { return reason; }
+
+        public boolean isSeatConflict() {
+            return seatNumber != null;
+        }
+
+        @Override
+        public String toString() {
+            return "Offline sale " + entryId + " of " + soldAt + ": " + reason;
+        }
+    }
+
+    /**
+     * Checks whether an error means the database could not be reached, as opposed to the
+     * statement being wrong or rejected.
+     */
+    public static boolean isConnectionFailure(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLRecoverableException || t instanceof SQLTransientConnectionException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && state.startsWith("08")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Constraint and data errors (SQLState classes 23 and 22) fail the same way every time
+    private static boolean isPermanentFailure(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLIntegrityConstraintViolationException || t instanceof SQLDataException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && (state.startsWith("23") || state.startsWith("22"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records a sale durably; returns once it is on disk.
+     *
+     * @param cashierId users.user_id of the cashier
+     * @param customerId customers.customer_id, or null for an anonymous sale
+     * @param cart the tickets and products sold; copied, so the cart may be cleared afterwards
+     * @param pricing the tax rates charged
+     * @return the journal entry id, to show on the provisional receipt
+     * @throws IOException if the journal cannot be written; the sale is not recorded then
+     */
+    public synchronized String append(int cashierId, Integer customerId, ShoppingCart cart,
+                                      PricingSnapshot pricing) throws IOException {
+        ensureOpen();
+        Entry entry = new Entry(UUID.randomUUID().toString(), LocalDateTime.now(), cashierId, customerId,
+                pricing.getTicketTaxRate(), pricing.getProductTaxRate(), cart);
+        write(Collections.singletonList(entry.encode()));
+        pending.put(entry.id, entry);
+        return entry.id;
+    }
+
+    /**
+     * Returns the number of sales waiting to be written.
+     */
+    public synchronized int getPendingCount() {
+        try {
+            ensureOpen();
+        } catch (IOException e) {
+            return 0;
+        }
+        return pending.size();
+    }
+
+    /**
+     * Calls the listener, on the replayer thread, for every journaled sale that could not be written.
+     */
+    public EventBus.Subscription addConflictListener(Consumer<Conflict> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    /**
+     * Starts the background replayer. Does nothing if already running.
+     */
+    public synchronized void start() {
+        if (replayer != null) {
+            return;
+        }
+        replayer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-replayer");
+            t.setDaemon(true);
+            return t;
+        });
+        replayer.scheduleWithFixedDelay(this::replayQuietly, 0, replayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the replayer; pending sales stay in the journal for the next start.
+     */
+    public synchronized void stop() {
+        if (replayer != null) {
+            replayer.shutdownNow();
+            replayer = null;
+        }
+    }
+
+    /**
+     * Writes every pending sale, one batch per transaction.
+     *
+     * @param conn an open connection; its auto-commit mode is restored afterwards
+     * @return the number of sales written
+     * @throws SQLException if the database fails; the current batch stays pending
+     */
+    public int replay(Connection conn) throws SQLException {
+        int written = 0;
+        List<Entry> batch;
+        while (!(batch = nextBatch()).isEmpty() && !Thread.currentThread().isInterrupted()) {
+            written += replayBatch(conn, batch);
+        }
+        return written;
+    }
+
+    private void replayQuietly() {
+        if (getPendingCount() == 0) {
+            return;
+        }
+        try (Connection conn = dbFacade.connect()) {
+            replay(conn); // Counted in the journal.replayed metric
+        } catch (SQLException e) {
+            if (!isConnectionFailure(e)) {
+                System.err.println("Journal replay failed, will retry: " + e.getMessage());
+            } // Still offline otherwise; try again next time
+        } catch (RuntimeException e) {
+            System.err.println("Journal replay failed, will retry: " + e); // Keeps the schedule alive
+        }
+    }
+
+    private synchronized List<Entry> nextBatch() {
+        try {
+            ensureOpen();
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+        List<Entry> batch = new ArrayList<>();
+        for (Entry entry : pending.values()) {
+            if (batch.size() == batchSize) {
+                break;
+            }
+            batch.add(entry);
+        }
+        return batch;
+    }
+
+    private int replayBatch(Connection conn, List<Entry> batch) throws SQLException {
+        Map<String, Integer> done = findReplayed(conn, batch);
+        List<Conflict> conflicts = new ArrayList<>();
+        int written = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (Entry entry : batch) {
+                if (done.containsKey(entry.id)) {
+                    continue; // Written before the journal was updated
+                }
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    int saleId = CheckoutWriter.writeJournaledSale(conn, entry.cashierId, entry.customerId, entry.cart,
+                            entry.ticketTaxRate, entry.productTaxRate, entry.soldAt);
+                    try (PreparedStatement stmt = conn.prepareStatement(INSERT_REPLAY)) {
+                        stmt.setString(1, entry.id);
+                        stmt.setInt(2, saleId);
+                        stmt.executeUpdate();
+                    }
+                    done.put(entry.id, saleId);
+                    written++;
+                } catch (CheckoutWriter.SeatConflictException e) {
+                    conn.rollback(savepoint);
+                    conflicts.add(new Conflict(entry.id, entry.soldAt, e.getScheduleId(), e.getSeatNumber(),
+                            "seat " + e.getSeatNumber() + " of schedule " + e.getScheduleId() + " was sold by another terminal"));
+                } catch (SQLException e) {
+                    if (!isPermanentFailure(e)) {
+                        throw e; // Lost connection, lock wait timeout, deadlock...: the batch is replayed later
+                    }
+                    // Rejected for good, e.g. the cashier or schedule was deleted; retrying will not help
+                    conn.rollback(savepoint);
+                    conflicts.add(new Conflict(entry.id, entry.soldAt, 0, null, e.getMessage()));
+                }
+            }
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        settle(batch, done, conflicts);
+        REPLAYED.add(written);
+        for (Map.Entry<String, Integer> sale : done.entrySet()) {
+            ReceiptPipeline.getInstance().enqueue(sale.getValue());
+        }
+        for (Conflict conflict : conflicts) {
+            CONFLICTS.increment();
+            System.err.println(conflict);
+            for (Consumer<Conflict> listener : listeners) {
+                try {
+                    listener.accept(conflict);
+                } catch (RuntimeException e) {
+                    System.err.println("Conflict listener failed: " + e);
+                }
+            }
+        }
+        return written;
+    }
+
+    private static Map<String, Integer> findReplayed(Connection conn, List<Entry> batch) throws SQLException {
+        String sql = "SELECT entry_id, sale_id FROM journal_replays WHERE entry_id IN ("
+                + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")";
+        Map<String, Integer> replayed = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < batch.size(); i++) {
+                stmt.setString(i + 1, batch.get(i).id);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    replayed.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+        }
+        return replayed;
+    }
+
+    // Marks the batch's entries as written or rejected, then empties the journal if nothing is left
+    private synchronized void settle(List<Entry> batch, Map<String, Integer> done, List<Conflict> conflicts) {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Integer> sale : done.entrySet()) {
+            lines.add(withChecksum("D|" + sale.getKey() + "|" + sale.getValue()));
+        }
+        List<String> rejected = new ArrayList<>();
+        for (Conflict conflict : conflicts) {
+            lines.add(withChecksum("C|" + conflict.entryId + "|" + conflict.reason.replace('|', '/').replace('\n', ' ')));
+            rejected.add(pending.get(conflict.entryId).encode() + " # " + conflict.reason.replace('\n', ' '));
+        }
+        try {
+            if (!rejected.isEmpty()) {
+                // Kept for the manager before the journal lets go of them
+                Files.write(directory.resolve(CONFLICTS_FILE), linesToBytes(rejected),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+            }
+            write(lines);
+        } catch (IOException e) {
+            // The database has them; journal_replays stops them from being written twice
+            System.err.println("Could not update the sales journal: " + e.getMessage());
+        }
+        for (Entry entry : batch) {
+            if (done.containsKey(entry.id) || conflicts.stream().anyMatch(c -> c.entryId.equals(entry.id))) {
+                pending.remove(entry.id);
+            }
+        }
+        if (pending.isEmpty()) {
+            try {
+                channel.truncate(0);
+                channel.force(true);
+            } catch (IOException e) {
+                System.err.println("Could not compact the sales journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // Appends whole lines and waits until they are on disk
+    private void write(List<String> lines) throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(linesToBytes(lines));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(true);
+    }
+
+    // Reads the journal once; entries without a D or C record are pending
+    private void ensureOpen() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        Files.createDirectories(directory);
+        Path file = directory.resolve(JOURNAL_FILE);
+        FileChannel opened = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        for (String line : content.split("\n")) {
+            String record = verified(line);
+            if (record == null) {
+                if (!line.isEmpty()) {
+                    System.err.println("Skipping damaged journal line: " + line);
+                }
+                continue;
+            }
+            String[] fields = record.split("\\|", -1);
+            if (fields[0].equals("S")) {
+                Entry entry = Entry.decode(fields);
+                pending.put(entry.id, entry);
+            } else {
+                pending.remove(fields[1]); // D or C
+            }
+        }
+        channel = opened;
+        if (!content.isEmpty() && !content.endsWith("\n")) {
+            write(Collections.singletonList("")); // Ends a line torn by a crash, so the next record starts clean
+        }
+    }
+
+    private static String withChecksum(String record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return record + "|" + Long.toHexString(crc.getValue());
+    }
+
+    // The record without its checksum, or null if the line is torn or damaged
+    private static String verified(String line) {
+        int split = line.lastIndexOf('|');
+        if (split <= 0) {
+            return null;
+        }
+        String record = line.substring(0, split);
+        return withChecksum(record).equals(line) ? record : null;
+    }
+
+    private static byte[] linesToBytes(List<String> lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Path journalDirectory() {
+        String configured = System.getProperty("cinema.journal.dir");
+        return configured != null ? Paths.get(configured)
+                : Paths.get(System.getProperty("user.home"), ".group5cinema", "journal");
+    }
+
+    // One sale: S|id|soldAt|cashier|customer|ticketTax|productTax|tickets|products|crc,
+    // tickets as scheduleId:seat:basePrice:discount;... and products as productId:quantity:unitPrice;...
+    private static class Entry {
+        private final String id;
+        private final LocalDateTime soldAt;
+        private final int cashierId;
+        private final Integer customerId;
+        private final BigDecimal ticketTaxRate;
+        private final BigDecimal productTaxRate;
+        private final ShoppingCart cart = new ShoppingCart();
+
+        Entry(String id, LocalDateTime soldAt, int cashierId, Integer customerId,
+              BigDecimal ticketTaxRate, BigDecimal productTaxRate, ShoppingCart source) {
+            this.id = id;
+            this.soldAt = soldAt;
+            this.cashierId = cashierId;
+            this.customerId = customerId;
+            this.ticketTaxRate = ticketTaxRate;
+            this.productTaxRate = productTaxRate;
+            for (ShoppingCart.TicketLine t : source.getTickets()) {
+                cart.addTicket(t.getScheduleId(), t.getSeatNumber(), t.getBasePrice(), t.getDiscountRate());
+            }
+            for (ShoppingCart.ProductLine p : source.getProducts()) {
+                cart.addProduct(p.getProductId(), "#" + p.getProductId(), p.getQuantity(), p.getUnitPrice());
+            }
+        }
+
+        String encode() {
+            List<String> tickets = new ArrayList<>();
+            for (ShoppingCart.TicketLine t : cart.getTickets()) {
+                tickets.add(t.getScheduleId() + ":" + t.getSeatNumber() + ":" + t.getBasePrice().toPlainString()
+                        + ":" + t.getDiscountRate().toPlainString());
+            }
+            List<String> products = new ArrayList<>();
+            for (ShoppingCart.ProductLine p : cart.getProducts()) {
+                products.add(p.getProductId() + ":" + p.getQuantity() + ":" + p.getUnitPrice().toPlainString());
+            }
+            return withChecksum(String.join("|", "S", id, soldAt.toString(), String.valueOf(cashierId),
+                    customerId == null ? "" : customerId.toString(), ticketTaxRate.toPlainString(),
+                    productTaxRate.toPlainString(), String.join(";", tickets), String.join(";", products)));
+        }
+
+        static Entry decode(String[] f) {
+            ShoppingCart cart = new ShoppingCart();
+            if (!f[7].isEmpty()) {
+                for (String ticket : f[7].split(";")) {
+                    String[] t = ticket.split(":");
+                    cart.addTicket(Integer.parseInt(t[0]), t[1], new BigDecimal(t[2]), new BigDecimal(t[3]));
+                }
+            }
+            if (!f[8].isEmpty()) {
+                for (String product : f[8].split(";")) {
+                    String[] p = product.split(":");
+                    cart.addProduct(Integer.parseInt(p[0]), "#" + p[0], Integer.parseInt(p[1]), new BigDecimal(p[2]));
+                }
+            }
+            return new Entry(f[1], LocalDateTime.parse(f[2]), Integer.parseInt(f[3]),
+                    f[4].isEmpty() ? null : Integer.valueOf(f[4]), new BigDecimal(f[5]), new BigDecimal(f[6]), cart);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The upcoming screenings (movie title, day, session start time, schedule_id) in memory, so the
+ * cashier can still pick a show while the database is unreachable (see {@link SalesJournal}).
+ *
+ * Loaded when a cashier logs in. The cashier screens still ask the database first and only fall
+ * back to this copy when it cannot be reached, so schedules added since are shown when online.
+ * Days and times are strings as MySQL returns them ("2024-05-10", "14:00:00").
+ */
+public class ScheduleCache {
+
+    private static final ScheduleCache INSTANCE = new ScheduleCache();
+
+    private volatile Map<String, NavigableMap<String, NavigableMap<String, Integer>>> screenings = Collections.emptyMap();
+
+    /**
+     * Returns the cache shared by the cashier screens.
+     */
+    public static ScheduleCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Replaces the cache with every screening from today on.
+     *
+     * @param conn an open database connection
+     */
+    public void warmUp(Connection conn) throws SQLException {
+        String query = "SELECT m.title, sc.schedule_date, se.start_time, sc.schedule_id FROM schedule sc "
+                + "JOIN movies m ON sc.movie_id = m.movie_id "
+                + "JOIN sessions se ON sc.session_id = se.session_id "
+                + "WHERE sc.schedule_date >= CURDATE() ORDER BY sc.schedule_id";
+        Map<String, NavigableMap<String, NavigableMap<String, Integer>>> loaded = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                loaded.computeIfAbsent(rs.getString("title"), t -> new TreeMap<>())
+                        .computeIfAbsent(rs.getString("schedule_date"), d -> new TreeMap<>())
+                        .putIfAbsent(rs.getString("start_time"), rs.getInt("schedule_id")); // Lowest id, like the query
+            }
+        }
+        screenings = loaded;
+    }
+
+    /**
+     * Returns the days a movie is shown, in order.
+     */
+    public List<String> getDays(String title) {
+        NavigableMap<String, NavigableMap<String, Integer>> days = screenings.get(title);
+        return days == null ? Collections.emptyList() : new ArrayList<>(days.keySet());
+    }
+
+    /**
+     * Returns the session start times of a movie on a day, in order.
+     */
+    public List<String> getSessions(String title, String day) {
+        NavigableMap<String, Integer> sessions = sessions(title, day);
+        return sessions == null ? Collections.emptyList() : new ArrayList<>(sessions.keySet());
+    }
+
+    /**
+     * Returns the schedule_id of a screening, or null if it is not cached.
+     */
+    public Integer findScheduleId(String title, String day, String session) {
+        NavigableMap<String, Integer> sessions = sessions(title, day);
+        return sessions == null ? null : sessions.get(session);
+    }
+
+    private NavigableMap<String, Integer> sessions(String title, String day) {
+        NavigableMap<String, NavigableMap<String, Integer>> days = screenings.get(title);
+        return days == null ? null : days.get(day);
+    }
+}
@@ -0,0 +1,316 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plans a whole range of screenings in memory and writes them with one batched insert.
+ *
+ * Every (date, hall, session) slot in the range is filled by rotating through the chosen movies,
+ * skipping movies that are too long for the slot (a movie must end before the hall's next
+ * session starts) or that prefer another hall. Slots that already exist in the schedule table
+ * are reported as conflicts and left alone, so the UNIQUE (hall_id, session_id, schedule_date)
+ * constraint is never hit by our own insert.
+ */
+public class ScheduleGenerator {
+
+    private static final String INSERT_SCHEDULE =
+            "INSERT INTO schedule (movie_id, hall_id, session_id, schedule_date) VALUES (?, ?, ?, ?)";
+
+    private ScheduleGenerator() {
+    }
+
+    /**
+     * A movie to schedule.
+     */
+    public static class Movie {
+        private final int movieId;
+        private final String title;
+        private final int duration;
+        private final Integer preferredHallId;
+
+        /**
+         * @param movieId movies.movie_id
+         * @param title shown in warnings
+         * @param duration running time in minutes
+         * @param preferredHallId the only hall to show it in, or null for any hall
+         */
+        public Movie(int movieId, String title, int duration, Integer preferredHallId) {
+            this.movieId = movieId;
+            this.title = title;
+            this.duration = duration;
+            this.preferredHallId = preferredHallId;
+        }
+
+        public int getMovieId() { return movieId; }
+        public String getTitle() { return title; }
+        public int getDuration() { return duration; }
+        public Integer getPreferredHallId() { return preferredHallId; }
+
+        public Movie withPreferredHall(Integer hallId) {
+            return new Movie(movieId, title, duration, hallId);
+        }
+    }
+
+    /**
+     * A row of the sessions table.
+     */
+    public static class Session {
+        private final int sessionId;
+        private final LocalTime startTime;
+        private final int duration;
+
+        public Session(int sessionId, LocalTime startTime, int duration) {
+            this.sessionId = sessionId;
+            this.startTime = startTime;
+            this.duration = duration;
+        }
+
+        public int getSessionId() { return sessionId; }
+        public LocalTime getStartTime() { return startTime; }
+        public int getDuration() { return duration; }
+    }
+
+    /**
+     * One planned screening, i.e. one row for the schedule table.
+     */
+    public static class Entry {
+        private final int movieId;
+        private final int hallId;
+        private final int sessionId;
+        private final LocalDate date;
+
+        public Entry(int movieId, int hallId, int sessionId, LocalDate date) {
+            this.movieId = movieId;
+            this.hallId = hallId;
+            this.sessionId = sessionId;
+            this.date = date;
+        }
+
+        public int getMovieId() { return movieId; }
+        public int getHallId() { return hallId; }
+        public int getSessionId() { return sessionId; }
+        public LocalDate getDate() { return date; }
+    }
+
+    /**
+     * The result of {@link #plan}: what to insert, and what could not be planned.
+     */
+    public static class Plan {
+        private final List<Entry> entries;
+        private final int conflicts;
+        private final List<String> warnings;
+
+        Plan(List<Entry> entries, int conflicts, List<String> warnings) {
+            this.entries = Collections.unmodifiableList(entries);
+            this.conflicts = conflicts;
+            this.warnings = Collections.unmodifiableList(warnings);
+        }
+
+        public List<Entry> getEntries() { return entries; }
+        /** Number of slots skipped because they are already scheduled. */
+        public int getConflicts() { return conflicts; }
+        public List<String> getWarnings() { return warnings; }
+    }
+
+    /**
+     * Plans screenings for every day, hall and session in the range. Pure computation, no database access.
+     *
+     * @param movies the movies to rotate through
+     * @param hallIds halls to fill
+     * @param sessions the day's sessions
+     * @param from first day, inclusive
+     * @param to last day, inclusive
+     * @param existing slots already in the schedule table, as keys from {@link #slotKey}
+     * @return the planned entries plus conflicts and warnings
+     */
+    public static Plan plan(List<Movie> movies, Collection<Integer> hallIds, List<Session> sessions,
+                            LocalDate from, LocalDate to, Set<String> existing) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Start date " + from + " is after end date " + to);
+        }
+        List<Session> ordered = new ArrayList<>(sessions);
+        ordered.sort(Comparator.comparing(Session::getStartTime));
+        Map<Integer, Integer> minutesAvailable = minutesAvailable(ordered);
+
+        List<Entry> entries = new ArrayList<>();
+        List<String> warnings = new ArrayList<>();
+        Set<String> planned = new HashSet<>(existing);
+        int conflicts = 0;
+        int emptySlots = 0;
+
+        for (Movie movie : movies) {
+            boolean fitsAnywhere = ordered.stream().anyMatch(s -> movie.getDuration() <= minutesAvailable.get(s.getSessionId()));
+            if (!fitsAnywhere) {
+                warnings.add(movie.getTitle() + " (" + movie.getDuration() + " min) is longer than every session gap");
+            }
+        }
+
+        int next = 0; // Rotates through movies across all slots so each gets a fair share
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            for (int hallId : hallIds) {
+                for (Session session : ordered) {
+                    String key = slotKey(hallId, session.getSessionId(), date);
+                    if (planned.contains(key)) {
+                        conflicts++;
+                        continue;
+                    }
+                    int chosen = -1;
+                    for (int tried = 0; tried < movies.size(); tried++) {
+                        Movie candidate = movies.get((next + tried) % movies.size());
+                        if (fits(candidate, hallId, minutesAvailable.get(session.getSessionId()))) {
+                            chosen = (next + tried) % movies.size();
+                            break;
+                        }
+                    }
+                    if (chosen < 0) {
+                        emptySlots++;
+                        continue;
+                    }
+                    entries.add(new Entry(movies.get(chosen).getMovieId(), hallId, session.getSessionId(), date));
+                    planned.add(key);
+                    next = chosen + 1;
+                }
+            }
+        }
+        if (conflicts > 0) {
+            warnings.add(conflicts + " slot(s) were already scheduled and were kept as they are");
+        }
+        if (emptySlots > 0) {
+            warnings.add(emptySlots + " slot(s) were left empty: no selected movie fits them");
+        }
+        return new Plan(entries, conflicts, warnings);
+    }
+
+    private static boolean fits(Movie movie, int hallId, int minutes) {
+        return movie.getDuration() <= minutes
+                && (movie.getPreferredHallId() == null || movie.getPreferredHallId() == hallId);
+    }
+
+    // Time until the next session starts; the last session of the day only has its own duration
+    private static Map<Integer, Integer> minutesAvailable(List<Session> ordered) {
+        Map<Integer, Integer> minutes = new LinkedHashMap<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            Session session = ordered.get(i);
+            int gap = session.getDuration();
+            if (i + 1 < ordered.size()) {
+                gap = (ordered.get(i + 1).getStartTime().toSecondOfDay() - session.getStartTime().toSecondOfDay()) / 60;
+            }
+            minutes.put(session.getSessionId(), gap);
+        }
+        return minutes;
+    }
+
+    /**
+     * Identifies one (hall, session, date) slot, matching the schedule table's unique key.
+     */
+    public static String slotKey(int hallId, int sessionId, LocalDate date) {
+        return hallId + "/" + sessionId + "/" + date;
+    }
+
+    /**
+     * Loads every movie with its duration.
+     */
+    public static List<Movie> loadMovies(Connection conn) throws SQLException {
+        List<Movie> movies = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT movie_id, title, duration FROM movies ORDER BY title")) {
+            while (rs.next()) {
+                movies.add(new Movie(rs.getInt("movie_id"), rs.getString("title"), rs.getInt("duration"), null));
+            }
+        }
+        return movies;
+    }
+
+    /**
+     * Loads hall names keyed by hall_id.
+     */
+    public static Map<Integer, String> loadHalls(Connection conn) throws SQLException {
+        Map<Integer, String> halls = new LinkedHashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT hall_id, name FROM halls ORDER BY hall_id")) {
+            while (rs.next()) {
+                halls.put(rs.getInt("hall_id"), rs.getString("name"));
+            }
+        }
+        return halls;
+    }
+
+    /**
+     * Loads the daily sessions.
+     */
+    public static List<Session> loadSessions(Connection conn) throws SQLException {
+        List<Session> sessions = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT session_id, start_time, duration FROM sessions ORDER BY start_time")) {
+            while (rs.next()) {
+                sessions.add(new Session(rs.getInt("session_id"), rs.getTime("start_time").toLocalTime(), rs.getInt("duration")));
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Loads the slots already scheduled in a date range, as keys from {@link #slotKey}.
+     */
+    public static Set<String> loadExisting(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        Set<String> existing = new HashSet<>();
+        String query = "SELECT hall_id, session_id, schedule_date FROM schedule WHERE schedule_date BETWEEN ? AND ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setDate(1, Date.valueOf(from));
+            stmt.setDate(2, Date.valueOf(to));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(slotKey(rs.getInt("hall_id"), rs.getInt("session_id"), rs.getDate("schedule_date").toLocalDate()));
+                }
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Inserts a plan with one batched statement in a single transaction.
+     * If another admin scheduled one of the slots in the meantime, nothing is inserted.
+     *
+     * @param conn an open connection; its auto-commit mode is restored afterwards
+     * @param plan the plan from {@link #plan}
+     * @return the number of screenings inserted
+     */
+    public static int write(Connection conn, Plan plan) throws SQLException {
+        if (plan.getEntries().isEmpty()) {
+            return 0;
+        }
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SCHEDULE)) {
+            for (Entry entry : plan.getEntries()) {
+                stmt.setInt(1, entry.getMovieId());
+                stmt.setInt(2, entry.getHallId());
+                stmt.setInt(3, entry.getSessionId());
+                stmt.setDate(4, Date.valueOf(entry.getDate()));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            conn.commit();
+            return plan.getEntries().size();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory seat occupancy, one bitset per schedule_id.
+ *
+ * Replaces per-screen queries against the available_seats view: once a schedule is
+ * loaded, occupancy checks and vacant counts are answered from memory in O(1).
+ * The engine is warmed from the tickets table at startup and then kept up to date
+ * by calling {@link #markSold} / {@link #markCancelled} when a sale or cancellation commits.
+ *
+ * Seats are labelled row letter + seat number ("A1" ... "F8"), {@link #SEATS_PER_ROW} per row,
+ * so HALL_A (16) has rows A-B and HALL_B (48) has rows A-F.
+ */
+public class SeatAvailability {
+
+    public static final int SEATS_PER_ROW = 8;
+
+    private static final SeatAvailability INSTANCE = new SeatAvailability();
+    private static final Metrics.Histogram WARM_UP_TIME = Metrics.histogram("db.seats.warmUp");
+    private static final Metrics.Histogram LOAD_TIME = Metrics.histogram("db.seats.load");
+
+    private final Map<Integer, SeatMap> schedules = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the engine shared by all cashier screens in this process.
+     */
+    public static SeatAvailability getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Loads occupancy for every schedule from today on. Past shows are loaded lazily if asked for.
+     *
+     * @param conn an open database connection
+     * @throws SQLException if the schedules or tickets cannot be read
+     */
+    public void warmUp(Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        String scheduleQuery = "SELECT s.schedule_id, h.capacity FROM schedule s "
+                + "JOIN halls h ON s.hall_id = h.hall_id WHERE s.schedule_date >= CURDATE()";
+        String ticketQuery = "SELECT t.schedule_id, t.seat_number FROM tickets t "
+                + "JOIN schedule s ON t.schedule_id = s.schedule_id "
+                + "WHERE t.is_cancelled = FALSE AND s.schedule_date >= CURDATE()";
+
+        Map<Integer, SeatMap> loaded = new ConcurrentHashMap<>();
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(scheduleQuery)) {
+                while (rs.next()) {
+                    loaded.put(rs.getInt("schedule_id"), new SeatMap(rs.getInt("capacity")));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery(ticketQuery)) {
+                while (rs.next()) {
+                    SeatMap seats = loaded.get(rs.getInt("schedule_id"));
+                    int index = seatIndex(rs.getString("seat_number"));
+                    if (seats != null && index >= 0 && index < seats.capacity) {
+                        seats.set(index);
+                    }
+                }
+            }
+        }
+        schedules.putAll(loaded);
+        WARM_UP_TIME.recordSince(start);
+    }
+
+    /**
+     * Loads a single schedule from the database unless it is already in memory.
+     *
+     * @param conn an open database connection
+     * @param scheduleId the schedule to load
+     * @throws SQLException if the schedule does not exist or cannot be read
+     */
+    public void ensureLoaded(Connection conn, int scheduleId) throws SQLException {
+        if (schedules.containsKey(scheduleId)) {
+            return;
+        }
+        long start = System.nanoTime();
+        String capacityQuery = "SELECT h.capacity FROM schedule s JOIN halls h ON s.hall_id = h.hall_id WHERE s.schedule_id = ?";
+        String ticketQuery = "SELECT seat_number FROM tickets WHERE schedule_id = ? AND is_cancelled = FALSE";
+
+        SeatMap seats;
+        try (PreparedStatement stmt = conn.prepareStatement(capacityQuery)) {
+            stmt.setInt(1, scheduleId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Unknown schedule: " + scheduleId);
+                }
+                seats = new SeatMap(rs.getInt("capacity"));
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(ticketQuery)) {
+            stmt.setInt(1, scheduleId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int index = seatIndex(rs.getString("seat_number"));
+                    if (index >= 0 && index < seats.capacity) {
+                        seats.set(index);
+                    }
+                }
+            }
+        }
+        schedules.putIfAbsent(scheduleId, seats);
+        LOAD_TIME.recordSince(start);
+    }
+
+    /**
+     * Checks whether a schedule is already in memory.
+     */
+    public boolean isLoaded(int scheduleId) {
+        return schedules.containsKey(scheduleId);
+    }
+
+    /**
+     * Checks whether a seat has been sold for a schedule.
+     *
+     * @param scheduleId a loaded schedule
+     * @param seatNumber the seat label, e.g. "B3"
+     * @return true if the seat is taken
+     */
+    public boolean isOccupied(int scheduleId, String seatNumber) {
+        return seats(scheduleId).get(checkedIndex(scheduleId, seatNumber));
+    }
+
+    /**
+     * Returns the number of unsold seats for a schedule.
+     */
+    public int getVacantCount(int scheduleId) {
+        SeatMap seats = seats(scheduleId);
+        return seats.capacity - seats.occupied.get();
+    }
+
+    /**
+     * Returns the hall capacity of a schedule.
+     */
+    public int getCapacity(int scheduleId) {
+        return seats(scheduleId).capacity;
+    }
+
+    /**
+     * Records a committed ticket sale. A seat label outside the hall is ignored, as when loading.
+     *
+     * @return false if the seat was already marked sold; true otherwise (including unloaded schedules)
+     */
+    public boolean markSold(int scheduleId, String seatNumber) {
+        SeatMap seats = schedules.get(scheduleId);
+        if (seats == null) {
+            return true;
+        }
+        int index = seatIndex(seatNumber);
+        return index < 0 || index >= seats.capacity || seats.set(index);
+    }
+
+    /**
+     * Records a committed ticket cancellation. A seat label outside the hall is ignored, as when loading.
+     *
+     * @return true if the seat was marked sold before
+     */
+    public boolean markCancelled(int scheduleId, String seatNumber) {
+        SeatMap seats = schedules.get(scheduleId);
+        if (seats == null) {
+            return false;
+        }
+        int index = seatIndex(seatNumber);
+        return index >= 0 && index < seats.capacity && seats.clear(index);
+    }
+
+    /**
+     * Drops a schedule from memory so the next {@link #ensureLoaded} re-reads it.
+     */
+    public void evict(int scheduleId) {
+        schedules.remove(scheduleId);
+    }
+
+    /**
+     * Converts a seat label such as "C5" into a zero-based bit index.
+     *
+     * @return the index, or -1 if the label is malformed
+     */
+    public static int seatIndex(String seatNumber) {
+        if (seatNumber == null || seatNumber.length() < 2) {
+            return -1;
+        }
+        int row = Character.toUpperCase(seatNumber.charAt(0)) - 'A';
+        int seat;
+        try {
+            seat = Integer.parseInt(seatNumber.substring(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (row < 0 || seat < 1 || seat > SEATS_PER_ROW) {
+            return -1;
+        }
+        return row * SEATS_PER_ROW + (seat - 1);
+    }
+
+    /**
+     * Converts a zero-based bit index back into a seat label.
+     */
+    public static String seatLabel(int index) {
+        return String.valueOf((char) ('A' + index / SEATS_PER_ROW)) + (index % SEATS_PER_ROW + 1);
+    }
+
+    private SeatMap seats(int scheduleId) {
+        SeatMap seats = schedules.get(scheduleId);
+        if (seats == null) {
+            throw new IllegalStateException("Schedule " + scheduleId + " is not loaded");
+        }
+        return seats;
+    }
+
+    private int checkedIndex(int scheduleId, String seatNumber) {
+        return checkedIndex(seats(scheduleId), seatNumber);
+    }
+
+    private static int checkedIndex(SeatMap seats, String seatNumber) {
+        int index = seatIndex(seatNumber);
+        if (index < 0 || index >= seats.capacity) {
+            throw new IllegalArgumentException("Invalid seat " + seatNumber + " for a hall of " + seats.capacity);
+        }
+        return index;
+    }
+
+    // Occupancy bits for one schedule plus a running count so vacancy is O(1)
+    private static class SeatMap {
+        private final int capacity;
+        private final AtomicLongArray words;
+        private final AtomicInteger occupied = new AtomicInteger();
+
+        SeatMap(int capacity) {
+            this.capacity = capacity;
+            this.words = new AtomicLongArray((capacity + 63) / 64);
+        }
+
+        boolean get(int index) {
+            return (words.get(index >>> 6) & (1L << index)) != 0;
+        }
+
+        // Returns true if the bit changed from 0 to 1
+        boolean set(int index) {
+            int word = index >>> 6;
+            long mask = 1L << index;
+            while (true) {
+                long current = words.get(word);
+                if ((current & mask) != 0) {
+                    return false;
+                }
+                if (words.compareAndSet(word, current, current | mask)) {
+                    occupied.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+
+        // Returns true if the bit changed from 1 to 0
+        boolean clear(int index) {
+            int word = index >>> 6;
+            long mask = 1L << index;
+            while (true) {
+                long current = words.get(word);
+                if ((current & mask) == 0) {
+                    return false;
+                }
+                if (words.compareAndSet(word, current, current & ~mask)) {
+                    occupied.decrementAndGet();
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Time-limited, lock-free seat holds on top of {@link SeatAvailability}.
+ *
+ * A cashier takes a hold when a seat button is clicked; the hold is a compare-and-set on the
+ * seat's slot, so two cashiers racing for the same seat never both win and nobody blocks.
+ * Holds are confirmed all-or-nothing at checkout and expire on their own if the sale is abandoned.
+ *
+ * Holds only coordinate cashiers within this process. The checkout insert re-checks the
+ * tickets table, so terminals in different processes still cannot sell the same seat twice.
+ */
+public class SeatReservationService {
+
+    private static final SeatReservationService INSTANCE = new SeatReservationService(
+            SeatAvailability.getInstance(), Long.getLong("cinema.seatHold.ttlMs", 5 * 60_000L));
+
+    private final SeatAvailability availability;
+    private final long holdMillis;
+    private final Map<Integer, AtomicReferenceArray<Hold>> holds = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+
+    // Metrics
+    private final AtomicLong holdsTaken = new AtomicLong();
+    private final AtomicLong contendedHolds = new AtomicLong();
+    private final AtomicLong expiredHolds = new AtomicLong();
+    private final AtomicLong confirmedSeats = new AtomicLong();
+    private final AtomicLong failedConfirms = new AtomicLong();
+
+    public SeatReservationService(SeatAvailability availability, long holdMillis) {
+        this.availability = availability;
+        this.holdMillis = holdMillis;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "seat-hold-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, holdMillis / 4);
+        sweeper.scheduleWithFixedDelay(this::sweepExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the reservation service shared by all cashier screens in this process.
+     */
+    public static SeatReservationService getInstance() {
+        return INSTANCE;
+    }
+
+    static {
+        Metrics.gauge("seats.holdsTaken", INSTANCE::getHoldsTaken);
+        Metrics.gauge("seats.contendedHolds", INSTANCE::getContendedHolds);
+        Metrics.gauge("seats.expiredHolds", INSTANCE::getExpiredHolds);
+        Metrics.gauge("seats.failedConfirms", INSTANCE::getFailedConfirms);
+    }
+
+    /**
+     * Tries to hold a seat for a cashier. The schedule must already be loaded in {@link SeatAvailability}.
+     *
+     * @param scheduleId the screening
+     * @param seatNumber the seat label, e.g. "B3"
+     * @param holder identifies the cashier session taking the hold
+     * @return true if the seat is now held by this holder (re-holding extends the hold)
+     */
+    public boolean hold(int scheduleId, String seatNumber, String holder) {
+        if (availability.isOccupied(scheduleId, seatNumber)) {
+            contendedHolds.incrementAndGet();
+            return false;
+        }
+        AtomicReferenceArray<Hold> slots = slots(scheduleId);
+        int index = SeatAvailability.seatIndex(seatNumber);
+        long now = System.currentTimeMillis();
+        Hold fresh = new Hold(holder, now + holdMillis);
+
+        while (true) {
+            Hold current = slots.get(index);
+            if (current != null && current.confirmed) {
+                contendedHolds.incrementAndGet();
+                return false;
+            }
+            if (current != null && !current.holder.equals(holder) && !current.isExpired(now)) {
+                contendedHolds.incrementAndGet();
+                return false;
+            }
+            if (slots.compareAndSet(index, current, fresh)) {
+                if (current != null && !current.holder.equals(holder)) {
+                    expiredHolds.incrementAndGet(); // Took over someone's lapsed hold
+                }
+                holdsTaken.incrementAndGet();
+                return true;
+            }
+            contendedHolds.incrementAndGet(); // Lost a race; re-read and decide again
+        }
+    }
+
+    /**
+     * Releases a hold, e.g. when the cashier deselects a seat or leaves the seat screen.
+     */
+    public void release(int scheduleId, String seatNumber, String holder) {
+        AtomicReferenceArray<Hold> slots = holds.get(scheduleId);
+        if (slots == null) {
+            return;
+        }
+        int index = SeatAvailability.seatIndex(seatNumber);
+        Hold current = slots.get(index);
+        if (current != null && !current.confirmed && current.holder.equals(holder)) {
+            slots.compareAndSet(index, current, null);
+        }
+    }
+
+    /**
+     * Releases every unconfirmed hold a holder has on a schedule.
+     */
+    public void releaseAll(int scheduleId, String holder) {
+        AtomicReferenceArray<Hold> slots = holds.get(scheduleId);
+        if (slots == null) {
+            return;
+        }
+        for (int i = 0; i < slots.length(); i++) {
+            Hold current = slots.get(i);
+            if (current != null && !current.confirmed && current.holder.equals(holder)) {
+                slots.compareAndSet(i, current, null);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a seat is currently held by someone other than the given holder.
+     */
+    public boolean isHeldByOther(int scheduleId, String seatNumber, String holder) {
+        AtomicReferenceArray<Hold> slots = holds.get(scheduleId);
+        if (slots == null) {
+            return false;
+        }
+        Hold current = slots.get(SeatAvailability.seatIndex(seatNumber));
+        return current != null && !current.holder.equals(holder)
+                && (current.confirmed || !current.isExpired(System.currentTimeMillis()));
+    }
+
+    /**
+     * Turns a holder's live holds into sold seats, all or nothing.
+     * If any hold has expired or been taken over, nothing is confirmed.
+     * Call {@link #revert} if the database write for these seats later fails.
+     *
+     * @param scheduleId the screening
+     * @param seatNumbers the seats being bought
+     * @param holder the cashier session that holds them
+     * @return true if every seat was confirmed
+     */
+    public boolean confirm(int scheduleId, List<String> seatNumbers, String holder) {
+        AtomicReferenceArray<Hold> slots = slots(scheduleId);
+        long now = System.currentTimeMillis();
+        List<Integer> done = new ArrayList<>();
+
+        for (String seatNumber : seatNumbers) {
+            int index = SeatAvailability.seatIndex(seatNumber);
+            Hold current = slots.get(index);
+            boolean ok = current != null && !current.confirmed && current.holder.equals(holder)
+                    && !current.isExpired(now)
+                    && slots.compareAndSet(index, current, new Hold(holder, Long.MAX_VALUE, true));
+            if (!ok) {
+                // Undo the seats confirmed so far; they go back to being held by this holder
+                for (int undone : done) {
+                    slots.set(undone, new Hold(holder, now + holdMillis));
+                }
+                failedConfirms.incrementAndGet();
+                return false;
+            }
+            done.add(index);
+        }
+        for (String seatNumber : seatNumbers) {
+            availability.markSold(scheduleId, seatNumber);
+        }
+        confirmedSeats.addAndGet(seatNumbers.size());
+        return true;
+    }
+
+    /**
+     * Undoes a confirmation whose sale could not be written, freeing the seats again.
+     * Only seats this holder confirmed are freed; a seat sold by someone else stays sold.
+     */
+    public void revert(int scheduleId, List<String> seatNumbers, String holder) {
+        AtomicReferenceArray<Hold> slots = holds.get(scheduleId);
+        if (slots == null) {
+            return;
+        }
+        int reverted = 0;
+        for (String seatNumber : seatNumbers) {
+            int index = SeatAvailability.seatIndex(seatNumber);
+            if (index < 0 || index >= slots.length()) {
+                continue;
+            }
+            Hold current = slots.get(index);
+            if (current != null && current.confirmed && current.holder.equals(holder)
+                    && slots.compareAndSet(index, current, null)) {
+                availability.markCancelled(scheduleId, seatNumber);
+                reverted++;
+            }
+        }
+        confirmedSeats.addAndGet(-reverted);
+    }
+
+    /**
+     * Frees a sold seat after its ticket was cancelled, so it can be held and sold again.
+     */
+    public void cancelSold(int scheduleId, String seatNumber) {
+        availability.markCancelled(scheduleId, seatNumber);
+        AtomicReferenceArray<Hold> slots = holds.get(scheduleId);
+        int index = SeatAvailability.seatIndex(seatNumber);
+        if (slots != null && index >= 0 && index < slots.length()) {
+            Hold current = slots.get(index);
+            if (current != null && current.confirmed) {
+                slots.compareAndSet(index, current, null);
+            }
+        }
+    }
+
+    private AtomicReferenceArray<Hold> slots(int scheduleId) {
+        return holds.computeIfAbsent(scheduleId,
+                id -> new AtomicReferenceArray<>(availability.getCapacity(id)));
+    }
+
+    // Clears lapsed holds so abandoned carts free their seats even if nobody touches them
+    private void sweepExpired() {
+        long now = System.currentTimeMillis();
+        for (AtomicReferenceArray<Hold> slots : holds.values()) {
+            for (int i = 0; i < slots.length(); i++) {
+                Hold current = slots.get(i);
+                if (current != null && !current.confirmed && current.isExpired(now)
+                        && slots.compareAndSet(i, current, null)) {
+                    expiredHolds.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the hold slots of a finished screening.
+     */
+    public void forget(int scheduleId) {
+        holds.remove(scheduleId);
+    }
+
+    // Metrics accessors
+
+    public long getHoldsTaken() { return holdsTaken.get(); }
+    public long getContendedHolds() { return contendedHolds.get(); }
+    public long getExpiredHolds() { return expiredHolds.get(); }
+    public long getConfirmedSeats() { return confirmedSeats.get(); }
+    public long getFailedConfirms() { return failedConfirms.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("SeatReservationService[holds=%d, contended=%d, expired=%d, confirmed=%d, failedConfirms=%d]",
+                getHoldsTaken(), getContendedHolds(), getExpiredHolds(), getConfirmedSeats(), getFailedConfirms());
+    }
+
+    // Immutable so a compare-and-set on the slot swaps the whole hold atomically
+    private static class Hold {
+        private final String holder;
+        private final long expiresAt;
+        private final boolean confirmed;
+
+        Hold(String holder, long expiresAt) {
+            this(holder, expiresAt, false);
+        }
+
+        Hold(String holder, long expiresAt, boolean confirmed) {
+            this.holder = holder;
+            this.expiresAt = expiresAt;
+            this.confirmed = confirmed;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
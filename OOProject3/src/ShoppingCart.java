@@ -0,0 +1,195 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The tickets and products a cashier is about to sell.
+ * Written to the database in one transaction by {@link CheckoutWriter}.
+ */
+public class ShoppingCart {
+
+    private final List<TicketLine> tickets = new ArrayList<>();
+    // Keyed by product_id so adding the same snack twice bumps the quantity (sale_items has one row per product)
+    private final Map<Integer, ProductLine> products = new LinkedHashMap<>();
+    private final Map<String, Double> displayItems = new LinkedHashMap<>();
+
+    /**
+     * Adds a free-form line that is only shown to the cashier.
+     *
+     * @param description what the line is, e.g. "Seat: A3"
+     * @param price the displayed price
+     */
+    public void addItem(String description, double price) {
+        displayItems.put(description, price);
+    }
+
+    /**
+     * Adds a ticket for a seat.
+     *
+     * @param scheduleId the screening
+     * @param seatNumber the seat label, e.g. "A3"
+     * @param basePrice the ticket price before discount
+     * @param discountRate the age discount in percent (0 if none)
+     */
+    public void addTicket(int scheduleId, String seatNumber, BigDecimal basePrice, BigDecimal discountRate) {
+        tickets.add(new TicketLine(scheduleId, seatNumber, basePrice, discountRate));
+        displayItems.put("Seat: " + seatNumber, basePrice.doubleValue());
+    }
+
+    /**
+     * Adds a product, or increases its quantity if it is already in the cart.
+     *
+     * @param productId the product
+     * @param name shown to the cashier
+     * @param quantity how many
+     * @param unitPrice the price of one unit
+     */
+    public void addProduct(int productId, String name, int quantity, BigDecimal unitPrice) {
+        ProductLine existing = products.get(productId);
+        int total = existing == null ? quantity : existing.getQuantity() + quantity;
+        products.put(productId, new ProductLine(productId, total, unitPrice));
+        displayItems.put(name, unitPrice.multiply(BigDecimal.valueOf(total)).doubleValue());
+    }
+
+    public List<TicketLine> getTickets() {
+        return Collections.unmodifiableList(tickets);
+    }
+
+    public List<ProductLine> getProducts() {
+        return Collections.unmodifiableList(new ArrayList<>(products.values()));
+    }
+
+    public Map<String, Double> getDisplayItems() {
+        return Collections.unmodifiableMap(displayItems);
+    }
+
+    public boolean isEmpty() {
+        return tickets.isEmpty() && products.isEmpty();
+    }
+
+    /**
+     * Removes all tickets, e.g. when the cashier leaves the seat screen and the holds are released.
+     */
+    public void clearTickets() {
+        for (TicketLine ticket : tickets) {
+            displayItems.remove("Seat: " + ticket.getSeatNumber());
+        }
+        tickets.clear();
+    }
+
+    public void clear() {
+        tickets.clear();
+        products.clear();
+        displayItems.clear();
+    }
+
+    /**
+     * Sum of ticket prices after discount, before tax.
+     */
+    public BigDecimal getTicketSubtotal() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (TicketLine ticket : tickets) {
+            sum = sum.add(ticket.getNetPrice());
+        }
+        return sum;
+    }
+
+    /**
+     * Sum of product prices, before tax.
+     */
+    public BigDecimal getProductSubtotal() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (ProductLine product : products.values()) {
+            sum = sum.add(product.getLineTotal());
+        }
+        return sum;
+    }
+
+    /**
+     * Tax on the cart.
+     *
+     * @param ticketTaxRate tax on tickets in percent
+     * @param productTaxRate tax on products in percent
+     */
+    public BigDecimal getTax(BigDecimal ticketTaxRate, BigDecimal productTaxRate) {
+        return getTicketTax(ticketTaxRate).add(getProductTax(productTaxRate));
+    }
+
+    /**
+     * Tax on the tickets only.
+     *
+     * @param ticketTaxRate tax on tickets in percent
+     */
+    public BigDecimal getTicketTax(BigDecimal ticketTaxRate) {
+        return percentOf(getTicketSubtotal(), ticketTaxRate);
+    }
+
+    /**
+     * Tax on the products only.
+     *
+     * @param productTaxRate tax on products in percent
+     */
+    public BigDecimal getProductTax(BigDecimal productTaxRate) {
+        return percentOf(getProductSubtotal(), productTaxRate);
+    }
+
+    /**
+     * Amount the customer pays, tax included.
+     */
+    public BigDecimal getTotal(BigDecimal ticketTaxRate, BigDecimal productTaxRate) {
+        return getTicketSubtotal().add(getProductSubtotal()).add(getTax(ticketTaxRate, productTaxRate));
+    }
+
+    static BigDecimal percentOf(BigDecimal amount, BigDecimal percent) {
+        return amount.multiply(percent).divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+    }
+
+    // One row of the tickets table
+    public static class TicketLine {
+        private final int scheduleId;
+        private final String seatNumber;
+        private final BigDecimal basePrice;
+        private final BigDecimal discountRate;
+
+        public TicketLine(int scheduleId, String seatNumber, BigDecimal basePrice, BigDecimal discountRate) {
+            this.scheduleId = scheduleId;
+            this.seatNumber = seatNumber;
+            this.basePrice = basePrice;
+            this.discountRate = discountRate;
+        }
+
+        public int getScheduleId() { return scheduleId; }
+        public String getSeatNumber() { return seatNumber; }
+        public BigDecimal getBasePrice() { return basePrice; }
+        public BigDecimal getDiscountRate() { return discountRate; }
+
+        public BigDecimal getNetPrice() {
+            return basePrice.subtract(percentOf(basePrice, discountRate));
+        }
+    }
+
+    // One row of the sale_items table
+    public static class ProductLine {
+        private final int productId;
+        private final int quantity;
+        private final BigDecimal unitPrice;
+
+        public ProductLine(int productId, int quantity, BigDecimal unitPrice) {
+            this.productId = productId;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+        }
+
+        public int getProductId() { return productId; }
+        public int getQuantity() { return quantity; }
+        public BigDecimal getUnitPrice() { return unitPrice; }
+
+        public BigDecimal getLineTotal() {
+            return unitPrice.multiply(BigDecimal.valueOf(quantity));
+        }
+    }
+}
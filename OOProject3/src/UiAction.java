@@ -0,0 +1,69 @@
+import java.util.function.Supplier;
+
+/**
+ * Names the UI action the current thread is working for, e.g. "ManagerGUI.updateStockBtn" or
+ * "Cashier.showSeatSelection", so every query it runs can be traced back to the click that
+ * caused it (see {@link QueryTracer}).
+ *
+ * The name is thread-local. {@link DataAccessExecutor} carries it over to the thread that runs
+ * the query; other hand-offs use {@link #bind}.
+ *
+ * <pre>
+ * try (UiAction.Scope ignored = UiAction.enter("Cashier.checkout")) {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class UiAction {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private UiAction() {
+    }
+
+    /**
+     * Restores the previous action when closed.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Makes name the current action until the returned scope is closed. The scope is never
+     * referenced inside its try block, so methods that open one carry @SuppressWarnings("try").
+     *
+     * @param name the action; null clears it for the scope
+     */
+    public static Scope enter(String name) {
+        String previous = CURRENT.get();
+        CURRENT.set(name);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Returns the current action, or null outside of any.
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Wraps work that will run on another thread so it runs under the caller's current action.
+     */
+    @SuppressWarnings("try")
+    public static <T> Supplier<T> bind(Supplier<T> work) {
+        String action = current();
+        return () -> {
+            try (Scope ignored = enter(action)) {
+                return work.get();
+            }
+        };
+    }
+}
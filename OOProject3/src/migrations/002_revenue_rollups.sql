@@ -0,0 +1,19 @@
+-- Revenue rollups, updated by every checkout (see RevenueRollup.java).
+-- Filled from the existing sales by RevenueRollup.rebuild, which MigrationRunner runs after the last step.
+-- applied-if: SELECT 1 FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = 'revenue_daily'
+
+CREATE TABLE revenue_daily (
+    sale_day DATE PRIMARY KEY,
+    sale_count INT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14,2) NOT NULL DEFAULT 0.00,
+    ticket_tax DECIMAL(14,2) NOT NULL DEFAULT 0.00,
+    product_tax DECIMAL(14,2) NOT NULL DEFAULT 0.00
+);
+
+CREATE TABLE revenue_monthly (
+    sale_month DATE PRIMARY KEY, -- First day of the month
+    sale_count INT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14,2) NOT NULL DEFAULT 0.00,
+    ticket_tax DECIMAL(14,2) NOT NULL DEFAULT 0.00,
+    product_tax DECIMAL(14,2) NOT NULL DEFAULT 0.00
+);
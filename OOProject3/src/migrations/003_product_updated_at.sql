@@ -0,0 +1,6 @@
+-- Change marker on products, so views can patch the rows that changed.
+-- applied-if: SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'products' AND column_name = 'updated_at'
+
+ALTER TABLE products
+    ADD COLUMN updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    ADD INDEX idx_products_updated_at (updated_at);
@@ -0,0 +1,14 @@
+-- Sort and filter columns of the manager's paged personnel and inventory tables
+-- (see KeysetPager.java; InnoDB appends the primary key to each).
+-- applied-if: SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'products' AND index_name = 'idx_products_name'
+
+ALTER TABLE users
+    ADD INDEX idx_users_first_name (first_name),
+    ADD INDEX idx_users_last_name (last_name),
+    ADD INDEX idx_users_role (role);
+
+ALTER TABLE products
+    ADD INDEX idx_products_name (name),
+    ADD INDEX idx_products_type (type),
+    ADD INDEX idx_products_price (price),
+    ADD INDEX idx_products_stock (stock_quantity);
@@ -0,0 +1,30 @@
+-- Change feed polled by every terminal (see ChangeFeed.java), filled by triggers.
+-- applied-if: SELECT 1 FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = 'change_log'
+
+CREATE TABLE change_log (
+    change_id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    kind ENUM('seat_sold', 'seat_released', 'stock', 'price') NOT NULL,
+    entity_id INT NOT NULL,     -- schedule_id for seats, product_id for stock, 0 for prices
+    detail VARCHAR(50),         -- seat_number for seats, config_key for prices
+    changed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_change_log_changed_at (changed_at)
+);
+
+CREATE TRIGGER tickets_sold AFTER INSERT ON tickets FOR EACH ROW
+    INSERT INTO change_log (kind, entity_id, detail) VALUES ('seat_sold', NEW.schedule_id, NEW.seat_number);
+
+CREATE TRIGGER tickets_released AFTER UPDATE ON tickets FOR EACH ROW
+    INSERT INTO change_log (kind, entity_id, detail)
+    SELECT 'seat_released', NEW.schedule_id, NEW.seat_number FROM DUAL WHERE NEW.is_cancelled AND NOT OLD.is_cancelled;
+
+CREATE TRIGGER products_added AFTER INSERT ON products FOR EACH ROW
+    INSERT INTO change_log (kind, entity_id) VALUES ('stock', NEW.product_id);
+
+CREATE TRIGGER products_changed AFTER UPDATE ON products FOR EACH ROW
+    INSERT INTO change_log (kind, entity_id) VALUES ('stock', NEW.product_id);
+
+CREATE TRIGGER products_removed AFTER DELETE ON products FOR EACH ROW
+    INSERT INTO change_log (kind, entity_id) VALUES ('stock', OLD.product_id);
+
+CREATE TRIGGER config_changed AFTER UPDATE ON config FOR EACH ROW
+    INSERT INTO change_log (kind, entity_id, detail) VALUES ('price', 0, NEW.config_key);
@@ -0,0 +1,12 @@
+-- Indexes for the hot queries. Checked by bench/QueryPlanCheck.java; run it after changing any of these.
+-- applied-if: SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'schedule' AND index_name = 'idx_schedule_date'
+
+-- Reports over a date range (sales per day or month, rollup rebuilds)
+ALTER TABLE sales ADD INDEX idx_sales_sale_date (sale_date), ALGORITHM=INPLACE, LOCK=NONE;
+
+-- Sold seats of a show. Covers the seat grids, the checkout seat check and available_seats.
+-- It also serves the foreign key, so the server drops the index it created for it by itself.
+ALTER TABLE tickets ADD INDEX idx_tickets_schedule_seat (schedule_id, is_cancelled, seat_number), ALGORITHM=INPLACE, LOCK=NONE;
+
+-- Upcoming shows, day lookups and the schedule generator
+ALTER TABLE schedule ADD INDEX idx_schedule_date (schedule_date), ALGORITHM=INPLACE, LOCK=NONE;
@@ -0,0 +1,19 @@
+-- Cold storage for closed months (see SalesArchiver.java). Sales whose month is closed and whose
+-- shows are all over move here, so sales and tickets only hold the current and upcoming business.
+-- Reports read the *_all views, which cover both.
+-- applied-if: SELECT 1 FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = 'sales_archive'
+
+-- Same columns and indexes as the hot tables; no foreign keys or triggers
+CREATE TABLE sales_archive LIKE sales;
+CREATE TABLE tickets_archive LIKE tickets;
+CREATE TABLE sale_items_archive LIKE sale_items;
+
+-- A sale is in exactly one of the two tables, so UNION ALL never double counts
+CREATE VIEW sales_all AS
+SELECT * FROM sales UNION ALL SELECT * FROM sales_archive;
+
+CREATE VIEW tickets_all AS
+SELECT * FROM tickets UNION ALL SELECT * FROM tickets_archive;
+
+CREATE VIEW sale_items_all AS
+SELECT * FROM sale_items UNION ALL SELECT * FROM sale_items_archive;
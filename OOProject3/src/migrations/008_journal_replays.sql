@@ -0,0 +1,11 @@
+-- Sales made while the database was unreachable are journaled on the terminal and written later
+-- (see SalesJournal.java). Each written journal entry is recorded here in the same transaction as
+-- its sale, so an entry replayed twice, e.g. after a crash before the journal was updated, is
+-- recognised instead of being sold again.
+-- applied-if: SELECT 1 FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = 'journal_replays'
+
+CREATE TABLE journal_replays (
+    entry_id CHAR(36) PRIMARY KEY,
+    sale_id INT NOT NULL,
+    replayed_at DATETIME DEFAULT CURRENT_TIMESTAMP
+);
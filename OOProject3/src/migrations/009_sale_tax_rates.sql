@@ -0,0 +1,17 @@
+-- Tax rates charged on each sale, so a receipt rendered later (a backfill, or a journaled sale
+-- written after a rate change) prints the rates and tax split that applied at the time.
+-- NULL on sales made before this step.
+-- applied-if: SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'sales_archive' AND column_name = 'product_tax_rate'
+
+ALTER TABLE sales
+    ADD COLUMN ticket_tax_rate DECIMAL(5,2) NULL,
+    ADD COLUMN product_tax_rate DECIMAL(5,2) NULL;
+
+-- Same column order, so SalesArchiver's INSERT ... SELECT * keeps working
+ALTER TABLE sales_archive
+    ADD COLUMN ticket_tax_rate DECIMAL(5,2) NULL,
+    ADD COLUMN product_tax_rate DECIMAL(5,2) NULL;
+
+-- SELECT * in a view is expanded when the view is created
+CREATE OR REPLACE VIEW sales_all AS
+SELECT * FROM sales UNION ALL SELECT * FROM sales_archive;
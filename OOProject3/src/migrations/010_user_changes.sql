@@ -0,0 +1,11 @@
+-- Tells every terminal when a user is changed or removed, so it drops the cached credentials
+-- (see AuthenticationManager and ChangeFeed). Added users need nothing: unknown names are not cached.
+-- applied-if: SELECT 1 FROM information_schema.triggers WHERE trigger_schema = DATABASE() AND trigger_name = 'users_changed'
+
+ALTER TABLE change_log MODIFY kind ENUM('seat_sold', 'seat_released', 'stock', 'price', 'user') NOT NULL;
+
+CREATE TRIGGER users_changed AFTER UPDATE ON users FOR EACH ROW
+    INSERT INTO change_log (kind, entity_id, detail) VALUES ('user', OLD.user_id, OLD.username);
+
+CREATE TRIGGER users_removed AFTER DELETE ON users FOR EACH ROW
+    INSERT INTO change_log (kind, entity_id, detail) VALUES ('user', OLD.user_id, OLD.username);
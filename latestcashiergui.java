@@ -1,3 +1,4 @@
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.image.ImageView;
@@ -5,49 +6,117 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 public class CashierGUI {
 
     private static Stage primaryStage;
+    private static final AuthenticationManager dbFacade = new AuthenticationManager(); // Pooled connections
     private static Connection connection;
+    private static final Metrics.Histogram CHECKOUT_TIME = Metrics.histogram("ui.cashier.checkout");
     private static Map<String, MovieDetails> movieDatabase;
+    private static MovieSearchIndex movieIndex;
+    private static final int MAX_SEARCH_RESULTS = 200;
+    private static final double POSTER_WIDTH = 200;
+    private static final double POSTER_HEIGHT = 300;
     private static ShoppingCart shoppingCart;
+    private static int cashierId;
+    private static String holderId;                     // Identifies this cashier's seat holds
+    private static int heldScheduleId = -1;             // Screening the held seats belong to
+    private static final List<String> heldSeats = new ArrayList<>();
+    private static EventBus.Subscription seatSubscription; // Live updates for the open seat grid
+    private static EventBus.Subscription conflictSubscription; // Offline sales that could not be written later
 
     // Entry point to display the Cashier GUI
+    @SuppressWarnings("try")
     public static void display(Stage stage, String username) {
         primaryStage = stage;
         movieDatabase = new HashMap<>();
         shoppingCart = new ShoppingCart();
+        holderId = username + "-" + UUID.randomUUID();
 
-        // Establish database connection using DatabaseFacade
-        try {
-            DatabaseFacade dbFacade = new DatabaseFacade();
+        // Borrow the cashier's connection from the pool
+        try (UiAction.Scope ignored = UiAction.enter("Cashier.display")) {
+            if (connection != null) {
+                connection.close(); // From an earlier login; hand it back to the pool
+            }
             connection = dbFacade.connect();
+            cashierId = loadCashierId(username);
             loadMovieDatabase();
+            long changesAfter = ChangeFeed.startingPoint(connection); // Before warming up, so no sale falls in between
+            SeatAvailability.getInstance().warmUp(connection); // Seat grids are served from memory afterwards
+            ScheduleCache.getInstance().warmUp(connection);    // Show times, for when the database is unreachable
+            ChangeFeed.getInstance().start(changesAfter);       // ...and kept current with other terminals' sales
         } catch (SQLException e) {
             showAlert(Alert.AlertType.ERROR, "Database Error", "Could not connect to database: " + e.getMessage());
             return;
         }
+        // Receipts the pipeline dropped or never got to, e.g. because the application was closed
+        DataAccessExecutor.submit(conn -> ReceiptPipeline.getInstance().enqueueMissing(conn, 100));
+
+        // Sales made while offline are written once the database is back
+        SalesJournal journal = SalesJournal.getInstance();
+        if (conflictSubscription != null) {
+            conflictSubscription.close();
+        }
+        conflictSubscription = journal.addConflictListener(conflict -> Platform.runLater(() ->
+                showAlert(Alert.AlertType.WARNING, "Offline Sale Conflict", conflict.getEntryId() + " sold at "
+                        + conflict.getSoldAt() + " could not be recorded: " + conflict.getReason()
+                        + ". It is kept in the conflicts journal; please call a manager.")));
+        journal.start();
 
         showSearchInterface();
     }
 
-    // Loads movie details from the database into a local map
+    // The cashier's connection; replaced after the database was unreachable
+    private static Connection db() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = dbFacade.connect();
+        }
+        return connection;
+    }
+
+    // Hands a connection that failed back to the pool, which discards it if broken; the next db() call borrows another
+    private static void dropConnection() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // Already unusable
+            }
+            connection = null;
+        }
+    }
+
+    // Loads movie details and genres from the database into a local map and search index
     private static void loadMovieDatabase() throws SQLException {
-        String query = "SELECT title, summary_path, genre, poster_path FROM movies";
+        String query = "SELECT m.title, m.summary_path, m.poster_path, "
+                + "GROUP_CONCAT(g.genre ORDER BY g.genre SEPARATOR ',') AS genres "
+                + "FROM movies m LEFT JOIN movie_genres g ON m.movie_id = g.movie_id "
+                + "GROUP BY m.movie_id, m.title, m.summary_path, m.poster_path";
+        MovieSearchIndex.Builder index = new MovieSearchIndex.Builder();
         try (PreparedStatement stmt = connection.prepareStatement(query);
              ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
                 String title = rs.getString("title");
                 String summary = rs.getString("summary_path");
-                String genre = rs.getString("genre");
+                String genreList = rs.getString("genres");
+                List<String> genres = genreList == null ? Collections.emptyList() : Arrays.asList(genreList.split(","));
                 String posterPath = rs.getString("poster_path");
-                movieDatabase.put(title, new MovieDetails(title, summary, genre, posterPath));
+                movieDatabase.put(title, new MovieDetails(title, summary, genres, posterPath));
+                index.add(title, genres);
             }
         }
+        movieIndex = index.build();
     }
 
     // Displays the search interface where users can search for movies
@@ -57,23 +126,17 @@ public class CashierGUI {
         Label searchLabel = new Label("Search for a Movie:");
         TextField searchField = new TextField();
         ComboBox<String> genreComboBox = new ComboBox<>();
-        genreComboBox.getItems().addAll(getUniqueGenres());
+        genreComboBox.getItems().addAll(movieIndex.getGenres());
         Button searchButton = new Button("Search");
 
         ListView<String> resultsList = new ListView<>();
-        // Search functionality: filters by title and genre
-        searchButton.setOnAction(e -> {
-            String searchTerm = searchField.getText().toLowerCase();
-            String selectedGenre = genreComboBox.getValue();
-            resultsList.getItems().clear();
-
-            for (MovieDetails movie : movieDatabase.values()) {
-                if ((searchTerm.isEmpty() || movie.getTitle().toLowerCase().contains(searchTerm)) &&
-                        (selectedGenre == null || movie.getGenre().equalsIgnoreCase(selectedGenre))) {
-                    resultsList.getItems().add(movie.getTitle());
-                }
-            }
-        });
+        // Search functionality: filters by title and genre, ranked by the search index
+        Runnable search = () -> resultsList.getItems().setAll(
+                movieIndex.search(searchField.getText(), genreComboBox.getValue(), MAX_SEARCH_RESULTS));
+        searchButton.setOnAction(e -> search.run());
+        // Search as you type
+        searchField.textProperty().addListener((observable, oldValue, newValue) -> search.run());
+        genreComboBox.setOnAction(e -> search.run());
 
         Button confirmButton = new Button("Confirm");
         // Proceeds to display movie details upon selection
@@ -99,7 +162,11 @@ public class CashierGUI {
         Label titleLabel = new Label("Title: " + movie.getTitle());
         Label genreLabel = new Label("Genre: " + movie.getGenre());
         Label summaryLabel = new Label("Summary: " + movie.getSummary());
-        ImageView posterView = new ImageView(movie.getPosterPath());
+        ImageView posterView = new ImageView();
+        posterView.setFitWidth(POSTER_WIDTH);
+        posterView.setFitHeight(POSTER_HEIGHT);
+        posterView.setPreserveRatio(true);
+        loadPoster(posterView, movie.getPosterPath());
 
         Button confirmButton = new Button("Approve");
         confirmButton.setOnAction(e -> showDaySessionSelection(movieTitle));
@@ -111,34 +178,89 @@ public class CashierGUI {
         primaryStage.setScene(new Scene(layout, 400, 400));
     }
 
+    // Shows a cached poster right away, or fills it in once the background decode finishes
+    private static void loadPoster(ImageView posterView, String posterPath) {
+        PosterCache posters = PosterCache.getInstance();
+        javafx.scene.image.Image cached = posters.getIfPresent(posterPath, POSTER_WIDTH, POSTER_HEIGHT);
+        if (cached != null) {
+            posterView.setImage(cached);
+            return;
+        }
+        posters.load(posterPath, POSTER_WIDTH, POSTER_HEIGHT).whenComplete((image, error) -> {
+            if (image != null) {
+                Platform.runLater(() -> posterView.setImage(image));
+            }
+            // No poster is shown if it cannot be loaded; the rest of the screen still works
+        });
+    }
+
     // Allows the user to select the day and session for the chosen movie
+    @SuppressWarnings("try")
     private static void showDaySessionSelection(String movieTitle) {
+        closeSeatSubscription();
         Label movieLabel = new Label("Movie: " + movieTitle);
         Label dayLabel = new Label("Select Day:");
         ComboBox<String> dayComboBox = new ComboBox<>();
-        dayComboBox.getItems().addAll("2025-01-13", "2025-01-14", "2025-01-15", "2025-01-16", "2025-01-17");
 
         Label sessionLabel = new Label("Select Session:");
         ComboBox<String> sessionComboBox = new ComboBox<>();
         Label vacantSeatsLabel = new Label();
 
-        try {
-            String query = "SELECT start_time FROM sessions WHERE movie_title = ?";
-            PreparedStatement stmt = connection.prepareStatement(query);
+        // Days on which the movie is scheduled from today on
+        try (UiAction.Scope ignored = UiAction.enter("Cashier.showDaySessionSelection");
+             PreparedStatement stmt = db().prepareStatement(
+                "SELECT DISTINCT sc.schedule_date FROM schedule sc JOIN movies m ON sc.movie_id = m.movie_id "
+                        + "WHERE m.title = ? AND sc.schedule_date >= CURDATE() ORDER BY sc.schedule_date")) {
             stmt.setString(1, movieTitle);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                sessionComboBox.getItems().add(rs.getString("start_time"));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    dayComboBox.getItems().add(rs.getString("schedule_date"));
+                }
             }
         } catch (SQLException e) {
-            showAlert(Alert.AlertType.ERROR, "Database Error", "Could not load session times: " + e.getMessage());
+            if (SalesJournal.isConnectionFailure(e)) {
+                dropConnection();
+                dayComboBox.getItems().setAll(ScheduleCache.getInstance().getDays(movieTitle)); // Offline
+            } else {
+                showAlert(Alert.AlertType.ERROR, "Database Error", "Could not load show days: " + e.getMessage());
+            }
         }
 
+        // Session times of the movie on the chosen day
+        dayComboBox.setOnAction(e -> {
+            sessionComboBox.getItems().clear();
+            vacantSeatsLabel.setText("");
+            String day = dayComboBox.getValue();
+            if (day == null) {
+                return;
+            }
+            try (UiAction.Scope ignored = UiAction.enter("Cashier.dayComboBox");
+                 PreparedStatement stmt = db().prepareStatement(
+                    "SELECT DISTINCT se.start_time FROM schedule sc JOIN movies m ON sc.movie_id = m.movie_id "
+                            + "JOIN sessions se ON sc.session_id = se.session_id "
+                            + "WHERE m.title = ? AND sc.schedule_date = ? ORDER BY se.start_time")) {
+                stmt.setString(1, movieTitle);
+                stmt.setString(2, day);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        sessionComboBox.getItems().add(rs.getString("start_time"));
+                    }
+                }
+            } catch (SQLException ex) {
+                if (SalesJournal.isConnectionFailure(ex)) {
+                    dropConnection();
+                    sessionComboBox.getItems().setAll(ScheduleCache.getInstance().getSessions(movieTitle, day)); // Offline
+                } else {
+                    showAlert(Alert.AlertType.ERROR, "Database Error", "Could not load session times: " + ex.getMessage());
+                }
+            }
+        });
+
         // Displays the number of vacant seats for the selected session
         sessionComboBox.setOnAction(e -> {
             String selectedSession = sessionComboBox.getValue();
             if (selectedSession != null) {
-                vacantSeatsLabel.setText("Vacant seats: " + getVacantSeats(movieTitle, selectedSession));
+                vacantSeatsLabel.setText("Vacant seats: " + getVacantSeats(movieTitle, dayComboBox.getValue(), selectedSession));
             }
         });
 
@@ -162,68 +284,238 @@ public class CashierGUI {
     }
 
     // Allows the user to select seats for the chosen session
+    @SuppressWarnings("try")
     private static void showSeatSelection(String movieTitle, String day, String session) {
         Label seatLabel = new Label("Select Seats:");
         GridPane seatGrid = new GridPane();
 
-        try {
-            String query = "SELECT seat_number, is_available FROM available_seats WHERE movie_title = ? AND session_time = ?";
-            PreparedStatement stmt = connection.prepareStatement(query);
-            stmt.setString(1, movieTitle);
-            stmt.setString(2, session);
-            ResultSet rs = stmt.executeQuery();
-
-            int row = 0;
-            int col = 0;
-            while (rs.next()) {
-                String seatNumber = rs.getString("seat_number");
-                boolean isAvailable = rs.getBoolean("is_available");
+        try (UiAction.Scope ignored = UiAction.enter("Cashier.showSeatSelection")) {
+            int scheduleId = findScheduleId(movieTitle, day, session);
+            SeatAvailability seats = SeatAvailability.getInstance();
+            SeatReservationService reservations = SeatReservationService.getInstance();
+            if (!seats.isLoaded(scheduleId)) {
+                seats.ensureLoaded(db(), scheduleId); // Upcoming shows are in memory, so this works offline too
+            }
+            BigDecimal basePrice = PricingSnapshot.current().getTicketBasePrice();
+            releaseHeldSeats();
+            heldScheduleId = scheduleId;
+
+            // One button per seat, laid out in the hall's rows
+            Map<String, Button> seatButtons = new HashMap<>();
+            for (int index = 0; index < seats.getCapacity(scheduleId); index++) {
+                String seatNumber = SeatAvailability.seatLabel(index);
                 Button seatButton = new Button(seatNumber);
-                seatButton.setDisable(!isAvailable);
+                seatButtons.put(seatNumber, seatButton);
+                seatButton.setDisable(seats.isOccupied(scheduleId, seatNumber)
+                        || reservations.isHeldByOther(scheduleId, seatNumber, holderId));
 
                 seatButton.setOnAction(e -> {
-                    shoppingCart.addItem("Seat: " + seatNumber, 50.0); // Example seat price
+                    // Hold the seat first so another cashier cannot sell it while this sale is open
+                    if (!reservations.hold(scheduleId, seatNumber, holderId)) {
+                        seatButton.setDisable(true);
+                        showAlert(Alert.AlertType.ERROR, "Seat Taken", "Seat " + seatNumber + " was just taken by another cashier.");
+                        return;
+                    }
+                    heldSeats.add(seatNumber);
+                    seatButton.setDisable(true);
+                    shoppingCart.addTicket(scheduleId, seatNumber, basePrice, BigDecimal.ZERO);
                     showAlert(Alert.AlertType.INFORMATION, "Seat Added", "Seat " + seatNumber + " added to cart.");
                 });
 
-                seatGrid.add(seatButton, col, row);
-                col++;
-                if (col == 5) { // Limit to 5 seats per row for better visualization
-                    col = 0;
-                    row++;
-                }
+                seatGrid.add(seatButton, index % SeatAvailability.SEATS_PER_ROW, index / SeatAvailability.SEATS_PER_ROW);
             }
+
+            // Seats sold or released on other terminals change state without reloading the grid
+            closeSeatSubscription();
+            seatSubscription = EventBus.getInstance().subscribe(events -> Platform.runLater(() -> {
+                for (EventBus.Event event : events) {
+                    Button seatButton = seatButtons.get(event.getDetail());
+                    if (event.getEntityId() == scheduleId && seatButton != null) {
+                        seatButton.setDisable(seats.isOccupied(scheduleId, event.getDetail())
+                                || heldSeats.contains(event.getDetail())
+                                || reservations.isHeldByOther(scheduleId, event.getDetail(), holderId));
+                    }
+                }
+            }), EventBus.Kind.SEAT_SOLD, EventBus.Kind.SEAT_RELEASED);
         } catch (SQLException e) {
             showAlert(Alert.AlertType.ERROR, "Database Error", "Could not load seat data: " + e.getMessage());
         }
 
         Button proceedButton = new Button("Proceed to Checkout");
-        proceedButton.setOnAction(e -> showAlert(Alert.AlertType.INFORMATION, "Checkout", "Proceeding to checkout."));
+        proceedButton.setOnAction(e -> {
+            if (checkout()) {
+                showDaySessionSelection(movieTitle);
+            }
+        });
 
         Button backButton = new Button("Back");
-        backButton.setOnAction(e -> showDaySessionSelection(movieTitle));
+        backButton.setOnAction(e -> {
+            releaseHeldSeats();
+            showDaySessionSelection(movieTitle);
+        });
 
         VBox layout = new VBox(10, seatLabel, seatGrid, proceedButton, backButton);
         primaryStage.setScene(new Scene(layout, 400, 400));
     }
 
-    // Retrieves the number of vacant seats for a specific session and movie
-    private static int getVacantSeats(String movieTitle, String session) {
-        try {
-            String query = "SELECT COUNT(*) AS vacant_seats FROM available_seats WHERE session_time = ? AND movie_title = ?";
-            PreparedStatement stmt = connection.prepareStatement(query);
-            stmt.setString(1, session);
-            stmt.setString(2, movieTitle);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("vacant_seats");
+    // Retrieves the number of vacant seats for a specific day, session and movie
+    @SuppressWarnings("try")
+    private static int getVacantSeats(String movieTitle, String day, String session) {
+        if (day == null) {
+            return 0;
+        }
+        try (UiAction.Scope ignored = UiAction.enter("Cashier.sessionComboBox")) {
+            int scheduleId = findScheduleId(movieTitle, day, session);
+            SeatAvailability seats = SeatAvailability.getInstance();
+            if (!seats.isLoaded(scheduleId)) {
+                seats.ensureLoaded(db(), scheduleId);
             }
+            return seats.getVacantCount(scheduleId);
         } catch (SQLException e) {
             showAlert(Alert.AlertType.ERROR, "Database Error", "Could not retrieve vacant seats: " + e.getMessage());
         }
         return 0;
     }
 
+    private static void closeSeatSubscription() {
+        if (seatSubscription != null) {
+            seatSubscription.close();
+            seatSubscription = null;
+        }
+    }
+
+    // Gives back any seats this cashier is holding but has not sold
+    private static void releaseHeldSeats() {
+        if (heldScheduleId >= 0) {
+            SeatReservationService.getInstance().releaseAll(heldScheduleId, holderId);
+        }
+        heldSeats.clear();
+        heldScheduleId = -1;
+        shoppingCart.clearTickets();
+    }
+
+    // Confirms the held seats and writes the whole cart as one sale; returns true on success
+    @SuppressWarnings("try")
+    private static boolean checkout() {
+        if (heldSeats.isEmpty()) {
+            showAlert(Alert.AlertType.ERROR, "Checkout", "Please select at least one seat.");
+            return false;
+        }
+        SeatReservationService reservations = SeatReservationService.getInstance();
+        int scheduleId = heldScheduleId;
+        List<String> seats = new ArrayList<>(heldSeats);
+
+        if (!reservations.confirm(scheduleId, seats, holderId)) {
+            releaseHeldSeats();
+            showAlert(Alert.AlertType.ERROR, "Checkout", "Your seat hold has expired. Please select the seats again.");
+            return false;
+        }
+        long start = System.nanoTime();
+        try (UiAction.Scope ignored = UiAction.enter("Cashier.checkout")) {
+            // One snapshot for the whole sale, so a concurrent price change can't split it
+            PricingSnapshot pricing = PricingSnapshot.current();
+            BigDecimal total = shoppingCart.getTotal(pricing.getTicketTaxRate(), pricing.getProductTaxRate());
+
+            int saleId;
+            try {
+                saleId = CheckoutWriter.writeSale(db(), cashierId, null, shoppingCart, pricing);
+            } catch (SQLException e) {
+                if (!SalesJournal.isConnectionFailure(e)) {
+                    throw e;
+                }
+                dropConnection();
+                return checkoutOffline(pricing, total);
+            }
+            ReceiptPipeline.getInstance().enqueue(saleId); // Rendered in the background; fills in invoice_path
+            heldSeats.clear();
+            heldScheduleId = -1;
+            shoppingCart.clear();
+            CHECKOUT_TIME.recordSince(start); // Up to the confirmation, which waits for the cashier
+            showAlert(Alert.AlertType.INFORMATION, "Checkout", "Sale #" + saleId + " completed. Total: " + total + " TL");
+            return true;
+        } catch (SQLException e) {
+            reservations.revert(scheduleId, seats, holderId);
+            if (e instanceof CheckoutWriter.SeatConflictException) {
+                // Sold by another terminal; reload so the grid shows it as taken
+                SeatAvailability.getInstance().evict(scheduleId);
+                releaseHeldSeats();
+            } else {
+                // Keep the seats held so the cashier can retry
+                for (String seat : seats) {
+                    reservations.hold(scheduleId, seat, holderId);
+                }
+            }
+            showAlert(Alert.AlertType.ERROR, "Checkout", "Could not complete the sale: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // The database is unreachable: the sale is journaled on disk and written by SalesJournal later
+    private static boolean checkoutOffline(PricingSnapshot pricing, BigDecimal total) {
+        String entryId;
+        try {
+            entryId = SalesJournal.getInstance().append(cashierId, null, shoppingCart, pricing);
+        } catch (IOException e) {
+            SeatReservationService.getInstance().revert(heldScheduleId, heldSeats, holderId);
+            releaseHeldSeats();
+            showAlert(Alert.AlertType.ERROR, "Checkout", "The database is unreachable and the sale could not be saved locally: "
+                    + e.getMessage());
+            return false;
+        }
+        heldSeats.clear();
+        heldScheduleId = -1;
+        shoppingCart.clear();
+        showAlert(Alert.AlertType.INFORMATION, "Checkout", "Offline sale " + entryId + " saved. Total: " + total
+                + " TL. It will be recorded when the database is reachable again.");
+        return true;
+    }
+
+    // Looks up the users.user_id of the logged-in cashier
+    private static int loadCashierId(String username) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT user_id FROM users WHERE username = ?")) {
+            stmt.setString(1, username);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt("user_id");
+                }
+            }
+        }
+        throw new SQLException("Unknown cashier: " + username);
+    }
+
+    // Resolves the schedule row for a movie shown on a given day and session start time;
+    // from the cached schedule while the database is unreachable
+    private static int findScheduleId(String movieTitle, String day, String session) throws SQLException {
+        try {
+            return queryScheduleId(movieTitle, day, session);
+        } catch (SQLException e) {
+            Integer cached = ScheduleCache.getInstance().findScheduleId(movieTitle, day, session);
+            if (!SalesJournal.isConnectionFailure(e) || cached == null) {
+                throw e;
+            }
+            dropConnection();
+            return cached;
+        }
+    }
+
+    private static int queryScheduleId(String movieTitle, String day, String session) throws SQLException {
+        String query = "SELECT sc.schedule_id FROM schedule sc "
+                + "JOIN movies m ON sc.movie_id = m.movie_id "
+                + "JOIN sessions se ON sc.session_id = se.session_id "
+                + "WHERE m.title = ? AND sc.schedule_date = ? AND se.start_time = ?";
+        try (PreparedStatement stmt = db().prepareStatement(query)) {
+            stmt.setString(1, movieTitle);
+            stmt.setString(2, day);
+            stmt.setString(3, session);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt("schedule_id");
+                }
+            }
+        }
+        throw new SQLException("No screening of " + movieTitle + " on " + day + " at " + session);
+    }
+
     // Displays an alert with the specified type, title, and message
     private static void showAlert(Alert.AlertType type, String title, String message) {
         Alert alert = new Alert(type);
@@ -236,13 +528,13 @@ public class CashierGUI {
     private static class MovieDetails {
         private final String title;
         private final String summary;
-        private final String genre;
+        private final List<String> genres;
         private final String posterPath;
 
-        public MovieDetails(String title, String summary, String genre, String posterPath) {
+        public MovieDetails(String title, String summary, List<String> genres, String posterPath) {
             this.title = title;
             this.summary = summary;
-            this.genre = genre;
+            this.genres = genres;
             this.posterPath = posterPath;
         }
 
@@ -255,19 +547,15 @@ public class CashierGUI {
         }
 
         public String getGenre() {
-            return genre;
+            return String.join(", ", genres);
+        }
+
+        public List<String> getGenres() {
+            return genres;
         }
 
         public String getPosterPath() {
             return posterPath;
         }
     }
-
-    // Retrieves unique genres from the movie database
-    private static String[] getUniqueGenres() {
-        return movieDatabase.values().stream()
-                .map(MovieDetails::getGenre)
-                .distinct()
-                .toArray(String[]::new);
-    }
 }